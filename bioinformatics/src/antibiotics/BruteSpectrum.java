@@ -190,69 +190,28 @@ public class BruteSpectrum {
 	
 	/**
 	 * <h1>Finds all peptides that match the given mass spectrum</h1>
-	 * Maintains two <code>Set</code>s: peptides that match the spectrum and peptides currently being considered.
-	 * From the latter, iteratively expands by all allowable masses (initially all amino acid masses), then adds
-	 * to the former if cyclic specturms match. If not, then checks if linear specturms are consistent and
-	 * throws out if not. After the first iteration updates allowable masses to be all current masses.
+	 * Grows candidate peptides depth-first from each amino acid in the spectrum (in parallel), checking
+	 * only the new subpeptide masses against a mass-indexed count of the spectrum with each amino acid
+	 * added, and keeps those whose cyclic spectrums match.
 	 * <br>
 	 * precondition: spectrum contains only combinations of actual amino acid masses
 	 * <br>
-	 * calls: expand, getFirsts, idealSpectrum, totalMass
+	 * calls: CyclopeptideSequencer.sequence
 	 * @param spectrum the spectrum that peptides should match
 	 * @return all peptides with spectrums that match
 	 */
 	public static Set<ArrayList<Integer>> spectrumSequencing(ArrayList<Integer> spectrum) {
 		// initialize return variable
-		Set<ArrayList<Integer>> goodPeptides = new HashSet<ArrayList<Integer>>();
-		// holds peptides that aren't quite good enough yet, initialized to the empty peptide
-		Set<ArrayList<Integer>> canadiates = new HashSet<ArrayList<Integer>>();
-		canadiates.add(new ArrayList<Integer>());
+		Set<ArrayList<Integer>> goodPeptides = new LinkedHashSet<ArrayList<Integer>>();
 		
-		// placeholders for the loop
-		
-		// the total mass of the final peptide
-		int parentMass = spectrum.get(spectrum.size() - 1);
-		// whether this is the first run or not
-		boolean firstRun = true;
-		// masses that may be added to the end of candidate peptides
-		int[] only = masses.clone();
-		// while still considering some peptides
-		while (!canadiates.isEmpty()) {
-			// expand all candidates by all allowable masses
-			canadiates = expand(canadiates, only);
-			
-			// loop through all peptides
-			for (Iterator<ArrayList<Integer>> i = canadiates.iterator(); i.hasNext();) {
-				// save the current peptide
-			    ArrayList<Integer> peptide = i.next();
-			    
-			    // if this peptide's mass equals the ideal mass
-			    if (totalMass(peptide) == parentMass) {
-			    	// if the cyclic spectrum of the peptide matches
-					if (idealSpectrum(peptide, true).equals(spectrum)
-					// and it hasn't been saved as good yet
-							&& !goodPeptides.contains(peptide)) {
-						// add it to return variable
-						goodPeptides.add(peptide);
-					}
-					// remove current peptide from consideration
-					i.remove();
-				}
-			    // or if this peptide's mass is too great
-				else if (totalMass(peptide) > parentMass ||
-				// or its linear spectrum is inconsistent with the given one
-						!spectrum.containsAll(idealSpectrum(peptide, false)))
-					// remove current peptide from consideration
-					i.remove();
-			}
-			
-			// if this is the first iteration
-			if (firstRun) {
-				// the only masses that can be added from now on are the current ones
-				only = getFirsts(canadiates);
-				// this is no longer the first iteration
-				firstRun = false;
-			}
+		// unbox the spectrum and sequence it
+		int[] spec = new int[spectrum.size()];
+		for (int i = 0; i < spec.length; i++) spec[i] = spectrum.get(i);
+		// box each peptide found
+		for (int[] peptide : new CyclopeptideSequencer(spec).sequence()) {
+			ArrayList<Integer> boxed = new ArrayList<Integer>();
+			for (int amino : peptide) boxed.add(amino);
+			goodPeptides.add(boxed);
 		}
 		
 		return goodPeptides;
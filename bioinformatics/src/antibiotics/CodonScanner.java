@@ -0,0 +1,272 @@
+package antibiotics;
+
+//for all kinds of lists
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//for genomes packed 2 bits per base
+import sequences.PackedDNA;
+
+/**
+ * <h1>Six-Frame Codon Scanner</h1>
+ * Finds every stretch of a genome that encodes any of a batch of peptides, on either strand, without
+ * listing the DNA strings that encode them (a 30-residue peptide has billions). Instead, the genome is
+ * translated as it is read, in all six reading frames at once, and the translations are matched against
+ * the peptides with an Aho-Corasick automaton.
+ * <br>
+ * The genome is read once, base by base, keeping the last three bases packed into a codon, which a table
+ * built from <code>EncodedPeptides.PACKED_CODON_TABLE</code> turns into the amino acid it encodes on each
+ * strand. Each base ends one codon, in the reading frame given by its index mod 3, so each of the three
+ * frames of each strand has its own automaton state. The reverse strand is read backwards, so its frames
+ * are matched against the reversed peptides: a reversed peptide ending at a base is the peptide starting
+ * there on the reverse strand. Stop codons match nothing and send the state back to the start.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>peptide</strong>: a chain of amino acids, here represented by
+ * 									concatenated amino acid abbreviations</li>
+ * 		<li><strong>reading frame</strong>: where codons start, mod 3, on one strand</li>
+ * 		<li><strong>automaton</strong>: a trie of the peptides where each state also knows where to go on
+ * 									any amino acid that doesn't continue it (the longest suffix of what
+ * 									has been read that is still in the trie)</li>
+ * </ul>
+ * @author faith
+ */
+public class CodonScanner {
+	/**
+	 * the number of amino acid symbols (A-Z), plus one for anything else (like stop codons)
+	 */
+	private static final int SYMBOLS = 27;
+	/**
+	 * the symbol of the amino acid each packed codon encodes, and of its reverse complement
+	 */
+	private static final int[] FORWARD = new int[64], REVERSE = new int[64];
+	static {
+		for (int codon = 0; codon < 64; codon++) {
+			FORWARD[codon] = symbol(EncodedPeptides.PACKED_CODON_TABLE[codon]);
+			REVERSE[codon] = symbol(EncodedPeptides.PACKED_CODON_TABLE[(int) PackedDNA.reverseComplement(codon, 3)]);
+		}
+	}
+
+	/**
+	 * the different peptides being looked for
+	 */
+	private final String[] peptides;
+	/**
+	 * which of those each peptide given to the constructor is
+	 */
+	private final int[] index;
+	/**
+	 * matches the peptides, and the reversed peptides
+	 */
+	private final automaton forward, reverse;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Builds the automata for the peptides and the reversed peptides, only once for repeated peptides.
+	 * <br>
+	 * precondition: peptides are not empty, and only contain amino acids from the codon table
+	 * @param peptides the peptides to look for
+	 */
+	public CodonScanner(List<String> peptides) {
+		// number the different peptides
+		Map<String, Integer> numbers = new HashMap<String, Integer>();
+		index = new int[peptides.size()];
+		for (int i = 0; i < index.length; i++) {
+			String peptide = peptides.get(i);
+			// check for argument validity
+			if (peptide.isEmpty()) throw new IllegalArgumentException("Can't look for an empty peptide");
+			for (char c : peptide.toCharArray())
+				if (symbol(c) == SYMBOLS - 1 || !EncodedPeptides.REVERSE_CODON_TABLE.containsKey(c))
+					throw new IllegalArgumentException("No codon encodes '" + c + "'");
+
+			numbers.putIfAbsent(peptide, numbers.size());
+			index[i] = numbers.get(peptide);
+		}
+
+		// list them in order of number
+		this.peptides = new String[numbers.size()];
+		for (Map.Entry<String, Integer> entry : numbers.entrySet()) this.peptides[entry.getValue()] = entry.getKey();
+
+		String[] reversed = new String[this.peptides.length];
+		for (int i = 0; i < reversed.length; i++) reversed[i] = new StringBuilder(this.peptides[i]).reverse().toString();
+
+		forward = new automaton(this.peptides);
+		reverse = new automaton(reversed);
+	}
+
+	/**
+	 * <h1>Finds where each peptide is encoded in a genome</h1>
+	 * Reads the genome once, stepping the automaton of each frame of each strand whenever a codon is
+	 * completed in it, and noting the start of every peptide that any of them finishes.
+	 * <br>
+	 * calls: automaton.step, record
+	 * @param genome the genome to scan
+	 * @return for each peptide given to the constructor (in the same order), the start indexes in genome of
+	 * 		the k-mers that encode it on either strand, in increasing order
+	 */
+	public ArrayList<ArrayList<Integer>> scan(PackedDNA genome) {
+		// the starts found for each different peptide
+		List<ArrayList<Integer>> starts = new ArrayList<ArrayList<Integer>>(peptides.length);
+		for (int i = 0; i < peptides.length; i++) starts.add(new ArrayList<Integer>());
+
+		// the state of each frame on each strand
+		int[] forwardState = new int[3], reverseState = new int[3];
+		// the last three bases
+		int codon = 0;
+
+		for (int i = 0; i < genome.length(); i++) {
+			codon = ((codon << 2) | genome.codeAt(i)) & 63;
+			// wait until there is a whole codon
+			if (i < 2) continue;
+
+			// the codon ending here is in the frame of its first base, and the next base starts a new one
+			int frame = (i - 2) % 3;
+			forwardState[frame] = forward.step(forwardState[frame], FORWARD[codon]);
+			record(forward, forwardState[frame], i + 1, starts);
+			reverseState[frame] = reverse.step(reverseState[frame], REVERSE[codon]);
+			record(reverse, reverseState[frame], i + 1, starts);
+		}
+
+		// initialize return variable, giving repeated peptides their own copies
+		ArrayList<ArrayList<Integer>> found = new ArrayList<ArrayList<Integer>>(index.length);
+		for (int i : index) found.add(new ArrayList<Integer>(starts.get(i)));
+
+		return found;
+	}
+
+	/**
+	 * <h1>Notes the start of every peptide that ends at a state</h1>
+	 * Follows the chain of matches from the state, skipping any start already noted
+	 * (when a k-mer encodes the peptide on both strands).
+	 * @param automaton the automaton the state is in
+	 * @param state the state just stepped to
+	 * @param end the index in the genome after the last base of the codon just read
+	 * @param starts the starts found so far for each peptide
+	 */
+	private void record(automaton automaton, int state, int end, List<ArrayList<Integer>> starts) {
+		for (int at = automaton.output(state); at >= 0; at = automaton.nextOutput[at]) {
+			int peptide = automaton.match[at];
+			ArrayList<Integer> list = starts.get(peptide);
+			int start = end - peptides[peptide].length() * 3;
+			if (list.isEmpty() || list.get(list.size() - 1) != start) list.add(start);
+		}
+	}
+
+	/**
+	 * <h1>Finds the symbol of an amino acid</h1>
+	 * @param aminoAcid an amino acid abbreviation (or anything else)
+	 * @return 0-25 for A-Z, or 26 for anything else
+	 */
+	private static int symbol(char aminoAcid) {
+		return aminoAcid >= 'A' && aminoAcid <= 'Z' ? aminoAcid - 'A' : SYMBOLS - 1;
+	}
+
+	/**
+	 * <h1>An Aho-Corasick automaton</h1>
+	 * Stored as a full transition table, so each step is one array lookup. State 0 is the start.
+	 */
+	private static class automaton {
+		/**
+		 * next[state * SYMBOLS + symbol] is where to go from a state on a symbol
+		 */
+		private final int[] next;
+		/**
+		 * the number of the pattern that ends at a state (or -1 if none does)
+		 */
+		private final int[] match;
+		/**
+		 * the next state down the chain of suffixes that has a match (or -1 if none does)
+		 */
+		private final int[] nextOutput;
+
+		/**
+		 * <h1>Constructor</h1>
+		 * Builds the trie of the patterns, then goes through it breadth-first, filling in each state's
+		 * missing transitions from the state of its longest proper suffix.
+		 * <br>
+		 * precondition: patterns are not empty, different, and only contain A-Z
+		 * @param patterns the patterns to match
+		 */
+		automaton(String[] patterns) {
+			// there can't be more states than letters, plus the start
+			int capacity = 1;
+			for (String pattern : patterns) capacity += pattern.length();
+			int[] next = new int[capacity * SYMBOLS];
+			Arrays.fill(next, -1);
+			int[] match = new int[capacity];
+			Arrays.fill(match, -1);
+
+			// build the trie
+			int states = 1;
+			for (int p = 0; p < patterns.length; p++) {
+				int state = 0;
+				for (char c : patterns[p].toCharArray()) {
+					int edge = state * SYMBOLS + symbol(c);
+					if (next[edge] < 0) next[edge] = states++;
+					state = next[edge];
+				}
+				match[state] = p;
+			}
+
+			// initialize the fields at the exact size
+			this.next = Arrays.copyOf(next, states * SYMBOLS);
+			this.match = Arrays.copyOf(match, states);
+			this.nextOutput = new int[states];
+
+			// fill in transitions breadth-first, so each state's suffix is done before it
+			int[] suffix = new int[states];
+			int[] queue = new int[states];
+			int head = 0, tail = 0;
+			nextOutput[0] = -1;
+			for (int s = 0; s < SYMBOLS; s++) {
+				int child = this.next[s];
+				if (child < 0) this.next[s] = 0;
+				else {
+					suffix[child] = 0;
+					nextOutput[child] = -1;
+					queue[tail++] = child;
+				}
+			}
+			while (head < tail) {
+				int state = queue[head++];
+				for (int s = 0; s < SYMBOLS; s++) {
+					int edge = state * SYMBOLS + s;
+					int fallback = this.next[suffix[state] * SYMBOLS + s];
+					if (this.next[edge] < 0) this.next[edge] = fallback;
+					else {
+						int child = this.next[edge];
+						suffix[child] = fallback;
+						nextOutput[child] = output(fallback);
+						queue[tail++] = child;
+					}
+				}
+			}
+
+			// anything that isn't an amino acid starts over
+			for (int state = 0; state < states; state++) this.next[state * SYMBOLS + SYMBOLS - 1] = 0;
+		}
+
+		/**
+		 * <h1>Steps from a state on a symbol</h1>
+		 * @param state the current state
+		 * @param symbol the symbol read
+		 * @return the next state
+		 */
+		int step(int state, int symbol) {
+			return next[state * SYMBOLS + symbol];
+		}
+
+		/**
+		 * <h1>Finds the first state with a match in a state's chain of suffixes</h1>
+		 * @param state a state
+		 * @return the state itself if it has a match, or else the next one down (or -1 if none does)
+		 */
+		int output(int state) {
+			return match[state] >= 0 ? state : nextOutput[state];
+		}
+	}
+}
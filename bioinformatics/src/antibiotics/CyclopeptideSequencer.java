@@ -0,0 +1,236 @@
+package antibiotics;
+
+//for all kinds of lists
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//for growing peptides on many threads
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * <h1>Branch-and-Bound Cyclopeptide Sequencing</h1>
+ * Finds every peptide whose cyclic spectrum is exactly a given ideal spectrum, without ever building
+ * a <code>Set</code> of candidates or a whole spectrum. The spectrum is stored as a count of how many
+ * times each mass appears, indexed by mass, and candidate peptides are grown depth-first, one amino acid
+ * at a time, in one reusable <code>int[]</code> per thread. Adding an amino acid to a prefix only adds the
+ * masses of the subpeptides that end with it (one per prefix mass), so those are the only masses checked
+ * against the counts, and undoing the amino acid just takes them back out. A prefix is abandoned as soon
+ * as one of its masses appears more times than in the spectrum, which cuts off everything that would
+ * have been grown from it.
+ * <br>
+ * The amino acids that can be used are those whose masses are in the spectrum (the same ones
+ * <code>BruteSpectrum.getFirsts</code> finds after one round), and each one of them starts a search of its
+ * own on its own thread.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>peptide</strong>: a chain of amino acids, here represented by an <code>int[]</code>
+ * 									of integer mass values, in order</li>
+ * 		<li><strong>prefix mass</strong>: the total mass of the first i amino acids of a peptide</li>
+ * 		<li><strong>consistent</strong>: every mass in a peptide's linear spectrum appears in the
+ * 									given spectrum at least as many times</li>
+ * </ul>
+ * @author faith
+ */
+public class CyclopeptideSequencer {
+	/**
+	 * how many times each mass appears in the spectrum
+	 */
+	private final int[] counts;
+	/**
+	 * the number of masses in the spectrum
+	 */
+	private final int size;
+	/**
+	 * the total mass of the peptide
+	 */
+	private final int parentMass;
+	/**
+	 * the amino acid masses that appear in the spectrum
+	 */
+	private final int[] firsts;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Counts each mass, then picks out the amino acid masses that appear.
+	 * <br>
+	 * precondition: spectrum is not empty, all masses are >= 0
+	 * @param spectrum an ideal cyclic spectrum, in any order
+	 */
+	public CyclopeptideSequencer(int[] spectrum) {
+		// the parent mass is the largest mass
+		int max = 0;
+		for (int mass : spectrum) {
+			// check for argument validity
+			if (mass < 0) throw new IllegalArgumentException("Can't have a mass of " + mass);
+			max = Math.max(max, mass);
+		}
+		parentMass = max;
+		size = spectrum.length;
+
+		// count each mass
+		counts = new int[parentMass + 1];
+		for (int mass : spectrum) counts[mass]++;
+
+		// the amino acids that can be used are those that are in the spectrum
+		firsts = IntStream.of(BruteSpectrum.masses).filter(mass -> mass <= parentMass && counts[mass] > 0).toArray();
+	}
+
+	/**
+	 * <h1>Getter for the amino acid masses that can be used</h1>
+	 * @return the amino acid masses that appear in the spectrum
+	 */
+	public int[] firsts() {
+		return firsts.clone();
+	}
+
+	/**
+	 * <h1>Finds every peptide whose cyclic spectrum is the spectrum</h1>
+	 * Searches from each first amino acid in parallel, then puts the results together in
+	 * order of first amino acid.
+	 * @return all matching peptides (every rotation and reversal of each one)
+	 */
+	public List<int[]> sequence() {
+		// initialize return variable
+		List<int[]> found = new ArrayList<int[]>();
+
+		// grow the peptides starting with each amino acid on a different thread
+		List<List<int[]>> byFirst = IntStream.range(0, firsts.length).parallel()
+				.mapToObj(i -> new search().from(firsts[i])).collect(Collectors.toList());
+		for (List<int[]> peptides : byFirst) found.addAll(peptides);
+
+		return found;
+	}
+
+	/**
+	 * <h1>One depth-first search</h1>
+	 * Holds the peptide being grown, its prefix masses, and how many times each mass
+	 * has been used by it, all of which are reused for every candidate.
+	 */
+	private class search {
+		/**
+		 * the peptide being grown (no peptide has more amino acids than this)
+		 */
+		private final int[] peptide = new int[parentMass / 57 + 1];
+		/**
+		 * prefixMass[i] is the total mass of the first i amino acids
+		 */
+		private final int[] prefixMass = new int[peptide.length + 1];
+		/**
+		 * how many times each mass is in the linear spectrum of the peptide
+		 */
+		private final int[] used = new int[parentMass + 1];
+		/**
+		 * the matching peptides found
+		 */
+		private final List<int[]> found = new ArrayList<int[]>();
+
+		/**
+		 * <h1>Finds every matching peptide starting with one amino acid</h1>
+		 * @param first the first amino acid
+		 * @return all matching peptides that start with it
+		 */
+		List<int[]> from(int first) {
+			// the empty subpeptide is always there
+			used[0] = 1;
+			if (add(first, 0)) grow(1);
+
+			return found;
+		}
+
+		/**
+		 * <h1>Grows the peptide from a length with every amino acid</h1>
+		 * Recursive function. End case where the peptide has reached the parent mass (checks the
+		 * cyclic spectrum). Otherwise, tries every amino acid that keeps it consistent and recurses.
+		 * <br>
+		 * calls: add, remove, isCyclicMatch, itself
+		 * @param length the number of amino acids in the peptide
+		 */
+		private void grow(int length) {
+			// a full-mass peptide is either a match or a dead end
+			if (prefixMass[length] == parentMass) {
+				if (isCyclicMatch(length)) found.add(Arrays.copyOf(peptide, length));
+				return;
+			}
+
+			// try each amino acid
+			for (int amino : firsts) {
+				// stop once amino acids get too heavy (firsts is in increasing order)
+				if (prefixMass[length] + amino > parentMass) break;
+				if (add(amino, length)) grow(length + 1);
+				remove(length);
+			}
+		}
+
+		/**
+		 * <h1>Puts an amino acid on the end of the peptide</h1>
+		 * Counts the mass of every subpeptide ending with it, stopping as soon as
+		 * one is used more times than the spectrum has.
+		 * @param amino the amino acid's mass
+		 * @param length the number of amino acids before it
+		 * @return whether the longer peptide is still consistent
+		 */
+		private boolean add(int amino, int length) {
+			// save the amino acid and its prefix mass
+			peptide[length] = amino;
+			prefixMass[length + 1] = prefixMass[length] + amino;
+
+			// count every subpeptide ending with this amino acid
+			for (int i = length; i >= 0; i--) {
+				int mass = prefixMass[length + 1] - prefixMass[i];
+				// if it's used too many times, undo the ones counted so far (including this one)
+				if (++used[mass] > counts[mass]) {
+					for (int j = length; j >= i; j--) used[prefixMass[length + 1] - prefixMass[j]]--;
+					// mark as already undone, so remove leaves the counts alone
+					prefixMass[length + 1] = -1;
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * <h1>Takes the last amino acid off the peptide</h1>
+		 * Uncounts the mass of every subpeptide ending with it (unless add already did).
+		 * @param length the number of amino acids before it
+		 */
+		private void remove(int length) {
+			if (prefixMass[length + 1] < 0) return;
+			for (int i = length; i >= 0; i--) used[prefixMass[length + 1] - prefixMass[i]]--;
+		}
+
+		/**
+		 * <h1>Checks if the peptide's cyclic spectrum is the spectrum</h1>
+		 * The linear masses are already counted, so only the masses of subpeptides that wrap around
+		 * need counting. If none is used too many times, and there are as many masses as in
+		 * the spectrum, the two are the same.
+		 * @param length the number of amino acids in the peptide
+		 * @return whether they match
+		 */
+		private boolean isCyclicMatch(int length) {
+			// a cyclic spectrum has two masses per pair of different cuts, plus 0 and the parent mass
+			if (length * (length - 1) + 2 != size) return false;
+
+			// count the wrapping subpeptides, and stop if one is used too many times
+			boolean match = true;
+			int counted = 0;
+			for (int i = 1; i < length && match; i++) {
+				for (int j = i + 1; j < length && match; j++) {
+					int mass = parentMass - (prefixMass[j] - prefixMass[i]);
+					counted++;
+					match = ++used[mass] <= counts[mass];
+				}
+			}
+
+			// uncount everything counted, in the same order
+			for (int i = 1; i < length && counted > 0; i++)
+				for (int j = i + 1; j < length && counted > 0; j++, counted--)
+					used[parentMass - (prefixMass[j] - prefixMass[i])]--;
+
+			return match;
+		}
+	}
+}
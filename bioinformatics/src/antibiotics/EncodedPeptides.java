@@ -8,6 +8,9 @@ import java.io.IOException;
 //for all kinds of lists
 import java.util.*;
 
+//for genomes packed 2 bits per base
+import sequences.PackedDNA;
+
 /**
  * <h1>Encoded Peptide Finder</h1>
  * Contains all the necessary methods to find all sections of DNA which encode peptides, as
@@ -31,6 +34,10 @@ public class EncodedPeptides {
 	 * stores a reverse codon table (amino acid-all codons) for easy access
 	 */
 	public static final Map<Character, ArrayList<String>> REVERSE_CODON_TABLE = initializeRCT();
+	/**
+	 * stores the codon table indexed by packed codon (6 bits) for lookups on packed genomes
+	 */
+	public static final char[] PACKED_CODON_TABLE = initializePCT();
 	
 	/**
 	 * <h1>Initializes the codon table from codons.txt</h1>
@@ -94,6 +101,22 @@ public class EncodedPeptides {
 		return rct;
 	}
 	
+	/**
+	 * <h1>Initializes the packed codon table from CODON_TABLE</h1>
+	 * Packs each codon (as DNA) into a number from 0 to 63 and stores its amino acid there.
+	 * @return the finished packed codon table
+	 */
+	public static char[] initializePCT() {
+		// initialize return variable
+		char[] pct = new char[64];
+		
+		// for each codon in codonTable, store its amino acid at its packed index
+		for (String codon : CODON_TABLE.keySet())
+			pct[(int) PackedDNA.encode(codon.replace('U', 'T'))] = CODON_TABLE.get(codon);
+		
+		return pct;
+	}
+	
 	/**
 	 * <h1>Creates the reverse complement of an DNA string</h1>
 	 * Loops through dna's chars adding complementary bases to the beginning of a new string.
@@ -157,31 +180,65 @@ public class EncodedPeptides {
 
 	/**
 	 * <h1>Finds all DNA strands in a long string that encode a peptide</h1>
-	 * Gets a Set of all DNA strings that encode the peptide, then checks each k-mer in
-	 * genome to see if it is contained in the Set, adding if so
+	 * Packs the genome, then scans all six reading frames for the peptide
 	 * <br>
-	 * preconditions: genome's length >= peptide's length * 3, no strings are empty
+	 * preconditions: no strings are empty
 	 * <br>
-	 * calls: peptideToDNAs
+	 * calls: peptideEncoding
 	 * @param genome the genome to check for coding segments
 	 * @param peptide the peptide that should be encoded
-	 * @return an <code>ArrayList</code> of k-mers in genome that encode peptide
+	 * @return an <code>ArrayList</code> of k-mers in genome that encode peptide (directly or
+	 * 		by reverse complement), in order of appearance
 	 */
 	public static ArrayList<String> peptideEncoding(String genome, String peptide) {
+		return peptideEncoding(new PackedDNA(genome), peptide);
+	}
+	
+	/**
+	 * <h1>Finds all DNA strands in a packed genome that encode a peptide</h1>
+	 * Scans all six reading frames for just this peptide
+	 * <br>
+	 * preconditions: peptide is not empty
+	 * <br>
+	 * calls: peptideEncodings
+	 * @param genome the packed genome to check for coding segments
+	 * @param peptide the peptide that should be encoded
+	 * @return an <code>ArrayList</code> of k-mers in genome that encode peptide (directly or
+	 * 		by reverse complement), in order of appearance
+	 */
+	public static ArrayList<String> peptideEncoding(PackedDNA genome, String peptide) {
+		return peptideEncodings(genome, List.of(peptide)).get(0);
+	}
+	
+	/**
+	 * <h1>Finds all DNA strands in a packed genome that encode each of a batch of peptides</h1>
+	 * Instead of listing every encoding DNA string (which grows exponentially with the peptide's
+	 * length), translates the genome in all six reading frames as it goes with PACKED_CODON_TABLE,
+	 * and matches every peptide at once with a <code>CodonScanner</code>.
+	 * <br>
+	 * preconditions: no peptides are empty
+	 * <br>
+	 * calls: CodonScanner.scan
+	 * @param genome the packed genome to check for coding segments
+	 * @param peptides the peptides that should be encoded
+	 * @return for each peptide (in order), an <code>ArrayList</code> of k-mers in genome that encode it
+	 * 		(directly or by reverse complement), in order of appearance
+	 */
+	public static ArrayList<ArrayList<String>> peptideEncodings(PackedDNA genome, List<String> peptides) {
 		// initialize return variable
-		ArrayList<String> dnas = new ArrayList<String>();
-		// calculate how long the k-mers should be
-		int k = peptide.length() * 3;
-		// get Set of all k-mers that encode this peptide
-		Set<String> valid = new HashSet<String>(peptideToDNAs(peptide));
-
-		// loop over all k-mers in genome
-		for (int i = 0; i <= genome.length() - k; i++) {
-			// if this k-mer, or its reverse complement, encodes peptide
-			if (valid.contains(genome.substring(i, i + k)))
-				// add it to the list
-				dnas.add(genome.substring(i, i + k));
+		ArrayList<ArrayList<String>> dnas = new ArrayList<ArrayList<String>>(peptides.size());
+		
+		// find where each peptide starts
+		ArrayList<ArrayList<Integer>> starts = new CodonScanner(peptides).scan(genome);
+		for (int i = 0; i < peptides.size(); i++) {
+			// calculate how long the k-mers should be
+			int k = peptides.get(i).length() * 3;
+			// cut each k-mer out of the genome
+			ArrayList<String> found = new ArrayList<String>(starts.get(i).size());
+			for (int start : starts.get(i)) found.add(genome.slice(start, start + k).toString());
+			dnas.add(found);
 		}
+		
 		return dnas;
 	}
 	
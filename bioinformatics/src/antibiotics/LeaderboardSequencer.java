@@ -0,0 +1,237 @@
+package antibiotics;
+
+//for all kinds of lists
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+//for scoring candidates on many threads
+import java.util.stream.IntStream;
+
+/**
+ * <h1>Pooled Leaderboard Cyclopeptide Sequencing</h1>
+ * Finds a peptide that best matches an experimental (noisy) mass spectrum, keeping only the best
+ * candidates each round, without any <code>Set</code>s or per-candidate arrays. Every candidate in a
+ * round has the same number of amino acids, so a round's candidates are stored as rows of one flat
+ * <code>int[]</code>, and expanding them just writes the next round's rows into a second flat buffer.
+ * The two buffers (and the score arrays) are swapped and reused from round to round, and only grow.
+ * <br>
+ * Each round, the candidates are expanded and scored on a parallel stream. The prefix masses of each
+ * candidate are worked out once, and every expansion of it is scored by <code>SpectrumScorer</code> from
+ * its parent's linear score, by looking only at the subpeptides that end with the new amino acid. Scores
+ * can only be between 0 and the size of the spectrum, so the lowest score that still makes the top n
+ * (counting ties) is found by counting how many candidates have each score and walking down from the
+ * highest, which takes linear time. Survivors are then packed to the front of the buffer in their
+ * original order.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>peptide</strong>: a chain of amino acids, here represented by integer mass values, in order</li>
+ * 		<li><strong>parent mass</strong>: the largest mass in the spectrum, which is the whole peptide's mass</li>
+ * 		<li><strong>leaderboard</strong>: the candidates kept from one round to the next</li>
+ * 		<li><strong>score</strong>: how many masses (counting multiplicity) two spectra share</li>
+ * </ul>
+ * @author faith
+ */
+public class LeaderboardSequencer {
+	/**
+	 * the number of masses in the experimental spectrum
+	 */
+	private final int size;
+	/**
+	 * scores peptides against the experimental spectrum
+	 */
+	private final SpectrumScorer scorer;
+	/**
+	 * the amino acid masses that candidates can be extended with
+	 */
+	private final int[] aminos;
+	/**
+	 * the minimum number of candidates to keep each round
+	 */
+	private final int n;
+	/**
+	 * the total mass of the peptide
+	 */
+	private final int parentMass;
+
+	/**
+	 * the candidates of this round (rows of length amino acids) and the next one
+	 */
+	private int[] rows = new int[0], nextRows = new int[0];
+	/**
+	 * the total mass of each candidate of this round and the next one
+	 */
+	private int[] mass = new int[1], nextMass = new int[0];
+	/**
+	 * the linear score of each candidate of this round, and the score of each expanded candidate
+	 * (cyclic for full-mass candidates, linear for lighter ones, -1 for heavier ones)
+	 */
+	private int[] score = new int[1], nextScore = new int[0];
+	/**
+	 * how many candidates there are, and how many amino acids each has
+	 */
+	private int count = 1, length = 0;
+
+	/**
+	 * the best full-mass peptide found so far, and its cyclic score
+	 */
+	private int[] leader;
+	private int topScore;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * precondition: spectrum is not empty, masses in spectrum are >= 0, n > 0
+	 * @param spectrum an experimental spectrum
+	 * @param aminos the amino acid masses to build peptides from
+	 * @param n the minimum number of candidates to keep each round
+	 */
+	public LeaderboardSequencer(ArrayList<Integer> spectrum, int[] aminos, int n) {
+		// check for argument validity
+		if (n <= 0) throw new IllegalArgumentException("Can't keep " + n + " candidates");
+		if (aminos.length == 0) throw new IllegalArgumentException("Can't build peptides out of no amino acids");
+		for (int amino : aminos)
+			if (amino <= 0) throw new IllegalArgumentException("Can't have an amino acid of mass " + amino);
+
+		this.size = spectrum.size();
+		this.scorer = new SpectrumScorer(spectrum);
+		this.aminos = aminos.clone();
+		this.n = n;
+		this.parentMass = Collections.max(spectrum);
+	}
+
+	/**
+	 * <h1>Finds the peptide that best matches the spectrum</h1>
+	 * Expands, scores, and trims the leaderboard until every candidate has reached or passed the parent
+	 * mass, keeping the first full-mass peptide seen with the best cyclic score.
+	 * <br>
+	 * calls: expand, trim
+	 * @return the best peptide, or null if no peptide has the parent mass
+	 */
+	public int[] sequence() {
+		// start over from the empty peptide
+		count = 1;
+		length = 0;
+		mass[0] = 0;
+		score[0] = scorer.emptyScore();
+		leader = null;
+		topScore = 0;
+
+		while (count > 0) {
+			int expanded = expand();
+			count = trim(expanded);
+
+			// the next round's buffers are this round's
+			int[] swap = rows;
+			rows = nextRows;
+			nextRows = swap;
+			swap = mass;
+			mass = nextMass;
+			nextMass = swap;
+			swap = score;
+			score = nextScore;
+			nextScore = swap;
+			length++;
+		}
+
+		return leader == null ? null : leader.clone();
+	}
+
+	/**
+	 * <h1>Getter for the cyclic score of the best peptide</h1>
+	 * @return the score of the peptide last returned by sequence
+	 */
+	public int topScore() {
+		return topScore;
+	}
+
+	/**
+	 * <h1>Expands and scores every candidate by every amino acid</h1>
+	 * Writes expanded candidate c * aminos.length + a (candidate c with amino acid a on the end)
+	 * into the next round's buffer, growing it if it is too small. Full-mass expansions get cyclic
+	 * scores, lighter ones get linear scores, and heavier ones get -1.
+	 * <br>
+	 * calls: SpectrumScorer.extend, SpectrumScorer.cyclicScore
+	 * @return the number of expanded candidates
+	 */
+	private int expand() {
+		int expanded = count * aminos.length;
+		int width = length + 1;
+
+		// grow the buffers if this round needs more space than any before
+		if (nextRows.length < expanded * width) nextRows = new int[expanded * width];
+		if (nextMass.length < expanded) nextMass = new int[expanded];
+		if (nextScore.length < expanded) nextScore = new int[expanded];
+
+		IntStream.range(0, count).parallel().forEach(c -> {
+			// work out the candidate's prefix masses once, leaving room for one more
+			int[] prefixMass = new int[length + 2];
+			for (int i = 0; i < length; i++) prefixMass[i + 1] = prefixMass[i] + rows[c * length + i];
+
+			// copy the candidate once per amino acid, put the amino acid on the end, and score it
+			for (int a = 0; a < aminos.length; a++) {
+				int e = c * aminos.length + a;
+				System.arraycopy(rows, c * length, nextRows, e * width, length);
+				nextRows[e * width + length] = aminos[a];
+				nextMass[e] = mass[c] + aminos[a];
+				prefixMass[length + 1] = nextMass[e];
+
+				if (nextMass[e] > parentMass) nextScore[e] = -1;
+				else {
+					nextScore[e] = scorer.extend(prefixMass, length, score[c]);
+					if (nextMass[e] == parentMass) nextScore[e] = scorer.cyclicScore(prefixMass, width, nextScore[e]);
+				}
+			}
+		});
+
+		return expanded;
+	}
+
+	/**
+	 * <h1>Saves the best full-mass candidate and trims the rest to the top n (allowing for ties)</h1>
+	 * Counts how many lighter-than-parent candidates have each score, walks down from the highest score
+	 * until at least n have been counted, and packs every candidate with at least that score to the
+	 * front of the buffer.
+	 * @param expanded the number of expanded candidates
+	 * @return the number of candidates kept
+	 */
+	private int trim(int expanded) {
+		int width = length + 1;
+
+		// save the best full-mass candidate, and count the scores of the lighter ones
+		int[] histogram = new int[size + 1];
+		int lighter = 0;
+		for (int e = 0; e < expanded; e++) {
+			if (nextMass[e] == parentMass) {
+				if (nextScore[e] > topScore) {
+					leader = Arrays.copyOfRange(nextRows, e * width, (e + 1) * width);
+					topScore = nextScore[e];
+				}
+			}
+			else if (nextMass[e] < parentMass) {
+				histogram[nextScore[e]]++;
+				lighter++;
+			}
+		}
+
+		// find the lowest score that still makes the top n
+		int threshold = 0;
+		if (lighter > n) {
+			int counted = 0;
+			threshold = histogram.length - 1;
+			while (counted + histogram[threshold] < n) counted += histogram[threshold--];
+		}
+
+		// pack the kept candidates to the front, in order
+		int kept = 0;
+		for (int e = 0; e < expanded; e++) {
+			if (nextMass[e] >= parentMass || nextScore[e] < threshold) continue;
+			System.arraycopy(nextRows, e * width, nextRows, kept * width, width);
+			nextMass[kept] = nextMass[e];
+			nextScore[kept] = nextScore[e];
+			kept++;
+		}
+
+		return kept;
+	}
+}
@@ -135,104 +135,47 @@ public class Scoring {
 	
 	/**
 	 * <h1>Find the m most common mass differences (accounting for ties) in spectrum that may correspond to amino acids</h1>
-	 * First creates a count map for all the differences, then uses that map to insertion-sort the differences
-	 * by count. Then, finds the first element after the mth that doesn't share the mth count, and dumps
-	 * all elements before that into an array for returning
+	 * Counts every difference from 57 to 200 in a histogram (never storing the differences themselves),
+	 * then takes every difference at least as common as the mth most common one.
 	 * <br>
-	 * precondition: all values in spectrum are >= 0, m > 1
+	 * precondition: all values in spectrum are >= 0, m > 0
+	 * <br>
+	 * calls: SpectralConvolution.histogram, SpectralConvolution.topBins
 	 * @param spectrum the spectrum to find mass differences in
 	 * @param m the minimum number of differences to save
-	 * @return the... see above
+	 * @return the... see above, most common first
 	 */
 	public static int[] topDiffs(ArrayList<Integer> spectrum, int m) {
-		// initialize count map & arraylist of differences
-		Map<Integer, Integer> diffsMap = new HashMap<Integer, Integer>();
-		ArrayList<Integer> diffs = new ArrayList<Integer>();
-		
-		// loop over all masses in spectrum
-		for (int i = 1; i < spectrum.size(); i++) {
-			// loop over all masses before i mass in spectrum
-			for (int j = i - 1; j >= 0; j--) {
-				// save this difference
-				int diff = Math.abs(spectrum.get(i) - spectrum.get(j));
-				// if it falls in the range of amino acid masses
-				if (diff > 56 && diff < 201) {
-					// if it hasn't been put into the diffsMap yet
-					if (!diffsMap.containsKey(diff)) {
-						// initialize it in diffMap and diffs
-						diffsMap.put(diff, 1);
-						diffs.add(diff);
-					}
-					// if it has been put in, increment its count
-					else diffsMap.put(diff, diffsMap.get(diff) + 1);
-				}
-			}
-		}
-		
-		// insertion sort: loop over all elements
-		for (int i = 1; i < diffs.size(); i++) {
-			// save current number
-			Integer current = diffs.get(i);
-			// index that this element should come after
-			int newIndex = i - 1;
-			// while it's checking elements that exist and the score of the checked element is less than the
-			// one being sorted
-			while(newIndex >= 0 && diffsMap.get(diffs.get(newIndex)) < diffsMap.get(current))
-				// decrement the index
-				newIndex--;
-			
-			// move current element to new, sorted index
-			diffs.remove(i);
-			diffs.add(newIndex + 1, current);
-		}
-		
-		// save the count of the mth element
-		int mCount = diffsMap.get(diffs.get(m - 1));
-		// first index to remove from
-		int removeIndex = m;
-		// while the index to remove from has the same count as mth, move index to remove from back
-		while (diffsMap.get(diffs.get(removeIndex)) == mCount) removeIndex++;
+		// count the differences in whole-number bins from 57 to 200
+		SpectralConvolution convolution = SpectralConvolution.integer();
+		int[] masses = new int[spectrum.size()];
+		for (int i = 0; i < masses.length; i++) masses[i] = spectrum.get(i);
+		int[] top = SpectralConvolution.topBins(convolution.histogram(masses), m);
 		
 		// initialize return variable
-		int[] diffsArray = new int[removeIndex - 1];
-		// add in all proper elements
-		for (int i = 0; i < diffsArray.length; i++) diffsArray[i] = diffs.get(i);
+		int[] diffsArray = new int[top.length];
+		// turn each bin back into its mass
+		for (int i = 0; i < top.length; i++) diffsArray[i] = (int) Math.round(convolution.mass(top[i]));
 		
 		return diffsArray;
 	}
 		
 	/**
 	 * <h1>Scores a peptide against a spectrum</h1>
-	 * Creates the theoretical spectrum for peptide, then loops over the experimental spectrum,
-	 * incrementing a counter for each match found. Each match is removed from the theoretical
-	 * spectrum to account for multiples.
+	 * Counts exSpec by mass, then scores the peptide from its prefix masses, so the theoretical
+	 * spectrum is never built or searched. (To score many peptides against one spectrum, make
+	 * one <code>SpectrumScorer</code> and reuse it.)
 	 * <br>
 	 * preconditions: peptide is a valid peptide, exSpec is a valid mass spectrum
 	 * <br>
-	 * calls: idealSpectrum
+	 * calls: SpectrumScorer.score
 	 * @param peptide the peptide to score
 	 * @param exSpec the spectrum to score against (experimentalSpectrum)
 	 * @param whether to use a linear or cyclic spectrum
 	 * @return the number of values (considering multipliticy) that match between the spectrums
 	 */
 	public static int score(int[] peptide, ArrayList<Integer> exSpec, boolean cyclo) {
-		// initialize return variable
-		int score = 0;
-		
-		// create the theoretical spectrum for this peptide
-		ArrayList<Integer> theoSpec = idealSpectrum(peptide, cyclo);
-		// loop over each value in exSpec
-		for (Integer ex : exSpec) {
-			// if this value is in theoSpec
-			if (theoSpec.contains(ex)) {
-				// add to score (match!)
-				score++;
-				// remove it from theoSpec (to prevent double-counting)
-				theoSpec.remove(ex);
-			}
-		}
-		
-		return score;
+		return new SpectrumScorer(exSpec).score(peptide, cyclo);
 	}
 	
 	/**
@@ -319,63 +262,21 @@ public class Scoring {
 	
 	/**
 	 * <h1>Finds a peptide that best matches the given mass specturm</h1>
-	 * Maintains a <code>Set</code> of at least n best-scoring peptides (there may be more if ties),
-	 * iteratively expanding it and then checking each one. If the total mass matches, and the score
-	 * is better than the current top score, then it is saved as the leader. If it is too big it is
-	 * deleted. This continues until no peptides are left under consideration
+	 * Keeps a leaderboard of at least n best-scoring peptides (there may be more if ties) in a flat
+	 * buffer, iteratively expanding it by the m most common mass differences and scoring the expansions
+	 * in parallel. If the total mass matches, and the score is better than the current top score, then
+	 * it is saved as the leader. This continues until no peptides are left under consideration
 	 * <br>
-	 * precondition: spectrum contains only combinations of actual amino acid masses, n > 1
+	 * precondition: exSpec is not empty, m > 1, n > 0
 	 * <br>
-	 * calls: expand, getFirsts, score, topDiffs, totalMass, trim
-	 * @param spectrum the spectrum that peptides are compared to
-	 * @return all peptides with spectrums that match
+	 * calls: topDiffs, LeaderboardSequencer.sequence
+	 * @param exSpec the spectrum that peptides are compared to
+	 * @param m the minimum number of mass differences to build peptides from
+	 * @param n the minimum number of peptides to keep each round
+	 * @return the best-scoring peptide
 	 */
 	public static int[] scoringSequencing(ArrayList<Integer> exSpec, int m, int n) {
-		// initialize return variable
-		int[] leader = null;
-		// holds peptides that are currently being tried, initialized to the empty peptide
-		Set<int[]> leaderboard = new HashSet<int[]>();
-		leaderboard.add(new int[0]);
-		
-		// placeholders for the loop
-		// the total mass of the final peptide
-		int parentMass = Collections.max(exSpec);
-		// the top score achieved
-		int topScore = 0;
-		int[] onlyMasses = topDiffs(exSpec, m);
-
-		// while still considering some peptides
-		while (!leaderboard.isEmpty()) {
-			// expand all candidates by all masses
-			leaderboard = expand(leaderboard, onlyMasses);
-			// loop through all peptides
-			for (Iterator<int[]> i = leaderboard.iterator(); i.hasNext();) {
-				// save the current peptide
-			    int[] peptide = i.next();
-			    
-			    // if this peptide's mass equals the ideal mass
-			    if (totalMass(peptide) == parentMass) {
-			    	// save its score
-			    	int score = score(peptide, exSpec, true);
-			    	// if it beats the top score
-					if (score > topScore) {
-						// set it as the best, and its score as the top
-						leader = peptide.clone();
-						topScore = score;
-						System.out.println(topScore);
-					}
-					i.remove();
-				}
-			    // or if this peptide's mass is too great
-				else if (totalMass(peptide) > parentMass)
-					// remove current peptide from consideration
-					i.remove();
-			}
-			
-			// trim leaderboard to at least n canadiates
-			leaderboard = trim(leaderboard, exSpec, n);
-		}
-		return leader;
+		return new LeaderboardSequencer(exSpec, topDiffs(exSpec, m), n).sequence();
 	}
 	
 	/**
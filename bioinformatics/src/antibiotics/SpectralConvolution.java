@@ -0,0 +1,213 @@
+package antibiotics;
+
+//for sorting spectra and results
+import java.util.Arrays;
+
+/**
+ * <h1>Spectral Convolution</h1>
+ * Finds the mass differences that come up most often between the peaks of a spectrum, which are likely
+ * to be the masses of the amino acids in the peptide (even ones that aren't among the usual 20).
+ * <br>
+ * The differences are never stored: a sorted copy of the spectrum is walked once, and each peak is only
+ * paired with the lighter peaks that are close enough for the difference to be in range, so a spectrum
+ * with thousands of peaks costs (peaks) * (peaks within the range) rather than (peaks)^2. Each difference
+ * is rounded to the nearest bin of a fixed width and counted in a primitive histogram, so real instruments
+ * (with fractional masses) can use bins like 0.01 Da while ideal spectra use bins of 1.
+ * <br>
+ * The m most common bins, with ties, are picked by quickselecting the m-th largest count out of a copy of
+ * the counts, which takes linear time on average, and then taking every bin with at least that count.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>convolution</strong>: the differences between every pair of peaks in a spectrum</li>
+ * 		<li><strong>bin</strong>: bin b covers the masses closer to minMass + b * binWidth than to any other bin</li>
+ * </ul>
+ * @author faith
+ */
+public class SpectralConvolution {
+	/**
+	 * the lightest and heaviest differences to count, and how wide each bin is
+	 */
+	private final double minMass, maxMass, binWidth;
+	/**
+	 * the number of bins
+	 */
+	private final int bins;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * precondition: 0 < minMass <= maxMass, binWidth > 0
+	 * @param minMass the lightest difference to count (the center of the first bin)
+	 * @param maxMass the heaviest difference to count
+	 * @param binWidth how wide each bin is
+	 */
+	public SpectralConvolution(double minMass, double maxMass, double binWidth) {
+		// check for argument validity
+		if (!(minMass > 0 && minMass <= maxMass && binWidth > 0))
+			throw new IllegalArgumentException("Can't bin differences from " + minMass + " to " + maxMass
+					+ " by " + binWidth);
+
+		this.minMass = minMass;
+		this.maxMass = maxMass;
+		this.binWidth = binWidth;
+		this.bins = (int) Math.round((maxMass - minMass) / binWidth) + 1;
+	}
+
+	/**
+	 * <h1>Creates a convolution for ideal spectra</h1>
+	 * Counts whole-number differences from 57 to 200, the range of amino acid masses.
+	 * @return a convolution with bins of width 1 from 57 to 200
+	 */
+	public static SpectralConvolution integer() {
+		return new SpectralConvolution(57, 200, 1);
+	}
+
+	/**
+	 * <h1>Getter for the number of bins</h1>
+	 * @return the number of bins
+	 */
+	public int bins() {
+		return bins;
+	}
+
+	/**
+	 * <h1>Getter for the mass at the center of a bin</h1>
+	 * @param bin a bin number
+	 * @return the mass it stands for
+	 */
+	public double mass(int bin) {
+		return minMass + bin * binWidth;
+	}
+
+	/**
+	 * <h1>Counts the differences in each bin</h1>
+	 * Sorts a copy of the spectrum, then for each peak walks down through the lighter peaks until the
+	 * difference is too big to count, binning each difference that is big enough.
+	 * @param spectrum the masses of the peaks, in any order
+	 * @return how many differences fall in each bin
+	 */
+	public int[] histogram(double[] spectrum) {
+		// initialize return variable
+		int[] histogram = new int[bins];
+		double[] sorted = spectrum.clone();
+		Arrays.sort(sorted);
+
+		// the differences that round into the first and last bins
+		double low = minMass - binWidth / 2, high = mass(bins - 1) + binWidth / 2;
+		for (int i = 1; i < sorted.length; i++) {
+			for (int j = i - 1; j >= 0; j--) {
+				double diff = sorted[i] - sorted[j];
+				// lighter peaks only make the difference bigger
+				if (diff >= high) break;
+				if (diff < low) continue;
+
+				int bin = (int) Math.round((diff - minMass) / binWidth);
+				histogram[Math.min(bins - 1, Math.max(0, bin))]++;
+			}
+		}
+
+		return histogram;
+	}
+
+	/**
+	 * <h1>Counts the differences in each bin, for a whole-number spectrum</h1>
+	 * calls: histogram
+	 * @param spectrum the masses of the peaks, in any order
+	 * @return how many differences fall in each bin
+	 */
+	public int[] histogram(int[] spectrum) {
+		double[] masses = new double[spectrum.length];
+		for (int i = 0; i < masses.length; i++) masses[i] = spectrum[i];
+
+		return histogram(masses);
+	}
+
+	/**
+	 * <h1>Finds the m bins with the most differences (accounting for ties)</h1>
+	 * Quickselects the m-th largest count, then takes every bin with at least that many differences,
+	 * most common first (and lightest first among ties). Empty bins are never taken.
+	 * <br>
+	 * precondition: m > 0
+	 * @param histogram how many differences fall in each bin
+	 * @param m the minimum number of bins to take
+	 * @return the bin numbers
+	 */
+	public static int[] topBins(int[] histogram, int m) {
+		// check for argument validity
+		if (m <= 0) throw new IllegalArgumentException("Can't take the top " + m + " bins");
+
+		// the counts of all non-empty bins
+		int[] counts = new int[histogram.length];
+		int filled = 0;
+		for (int count : histogram) if (count > 0) counts[filled++] = count;
+
+		// the m-th largest count is the lowest one that makes the cut
+		int threshold = filled <= m ? 1 : select(counts, filled, filled - m);
+
+		// key each bin that makes the cut by count (high first), then by bin (low first)
+		long[] keys = new long[histogram.length];
+		int taken = 0;
+		for (int bin = 0; bin < histogram.length; bin++)
+			if (histogram[bin] >= threshold) keys[taken++] = ((long) (Integer.MAX_VALUE - histogram[bin]) << 32) | bin;
+		Arrays.sort(keys, 0, taken);
+
+		// initialize return variable
+		int[] top = new int[taken];
+		for (int i = 0; i < taken; i++) top[i] = (int) keys[i];
+
+		return top;
+	}
+
+	/**
+	 * <h1>Finds the k-th smallest value in part of an array</h1>
+	 * Partitions around the middle value until the k-th index is in place. Reorders the array.
+	 * <br>
+	 * precondition: 0 <= k < length <= values's length
+	 * @param values the values
+	 * @param length how many of them to look at
+	 * @param k which value to find (0 is the smallest)
+	 * @return the k-th smallest value
+	 */
+	private static int select(int[] values, int length, int k) {
+		int low = 0, high = length - 1;
+
+		while (low < high) {
+			// partition around the middle value
+			int pivot = values[(low + high) >>> 1];
+			int i = low, j = high;
+			while (i <= j) {
+				while (values[i] < pivot) i++;
+				while (values[j] > pivot) j--;
+				if (i <= j) {
+					int temp = values[i];
+					values[i++] = values[j];
+					values[j--] = temp;
+				}
+			}
+
+			// keep going on whichever side has k
+			if (k <= j) high = j;
+			else if (k >= i) low = i;
+			else return values[k];
+		}
+
+		return values[k];
+	}
+
+	/**
+	 * <h1>Finds the m most common differences in a spectrum (accounting for ties)</h1>
+	 * calls: histogram, topBins, mass
+	 * @param spectrum the masses of the peaks, in any order
+	 * @param m the minimum number of differences to find
+	 * @return the masses of the most common bins, most common first
+	 */
+	public double[] topMasses(double[] spectrum, int m) {
+		int[] top = topBins(histogram(spectrum), m);
+
+		// initialize return variable
+		double[] masses = new double[top.length];
+		for (int i = 0; i < top.length; i++) masses[i] = mass(top[i]);
+
+		return masses;
+	}
+}
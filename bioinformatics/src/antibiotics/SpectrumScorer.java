@@ -0,0 +1,189 @@
+package antibiotics;
+
+//for taking spectra in as lists
+import java.util.Collection;
+
+/**
+ * <h1>Incremental Spectrum Scorer</h1>
+ * Scores peptides against one experimental spectrum without ever building or sorting a theoretical
+ * spectrum. The experimental spectrum is stored as a count of how many times each mass appears, indexed
+ * by mass, and a peptide is described by its prefix masses, so the mass of any subpeptide is just the
+ * difference of two prefix masses.
+ * <br>
+ * Scores are built up one amino acid at a time: putting an amino acid on the end of a peptide only adds
+ * the subpeptides that end with it, one per earlier prefix mass. Each of those adds a point if the
+ * spectrum has more copies of its mass than the shorter peptide already used. Since prefix masses only
+ * go up, how many copies the shorter peptide used can be counted by walking two pointers along them, so
+ * a one-amino-acid extension is scored in time linear in the peptide's length for every new mass that is
+ * in the spectrum at all (and constant time for those that aren't).
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>peptide</strong>: a chain of amino acids, here represented by integer mass values, in order</li>
+ * 		<li><strong>prefix mass</strong>: prefixMass[i] is the total mass of the first i amino acids
+ * 									(so prefixMass[0] is 0)</li>
+ * 		<li><strong>score</strong>: how many masses (counting multiplicity) the peptide's theoretical
+ * 									spectrum shares with the experimental one</li>
+ * </ul>
+ * @author faith
+ */
+public class SpectrumScorer {
+	/**
+	 * how many times each mass appears in the experimental spectrum
+	 */
+	private final int[] counts;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Counts each mass of the spectrum.
+	 * <br>
+	 * precondition: all masses in spectrum are >= 0
+	 * @param spectrum an experimental spectrum, in any order
+	 */
+	public SpectrumScorer(Collection<Integer> spectrum) {
+		// the largest mass decides how many counts are needed
+		int max = 0;
+		for (int mass : spectrum) {
+			// check for argument validity
+			if (mass < 0) throw new IllegalArgumentException("Can't have a mass of " + mass);
+			max = Math.max(max, mass);
+		}
+
+		// count each mass
+		counts = new int[max + 1];
+		for (int mass : spectrum) counts[mass]++;
+	}
+
+	/**
+	 * <h1>Getter for how many times a mass appears in the spectrum</h1>
+	 * @param mass any mass
+	 * @return the number of times it appears (0 if it's out of range)
+	 */
+	public int count(int mass) {
+		return mass >= 0 && mass < counts.length ? counts[mass] : 0;
+	}
+
+	/**
+	 * <h1>Scores the empty peptide</h1>
+	 * Its only subpeptide is the empty one, of mass 0.
+	 * @return 1 if the spectrum has a 0, or else 0
+	 */
+	public int emptyScore() {
+		return count(0) > 0 ? 1 : 0;
+	}
+
+	/**
+	 * <h1>Scores a peptide one amino acid longer than one already scored</h1>
+	 * Adds a point for each subpeptide ending with the new amino acid whose mass
+	 * the shorter peptide hasn't already used up.
+	 * <br>
+	 * precondition: prefixMass[0 ... length + 1] are the prefix masses of the longer peptide,
+	 * 				 and are strictly increasing
+	 * <br>
+	 * calls: count, occurrences
+	 * @param prefixMass the prefix masses of the longer peptide
+	 * @param length the number of amino acids in the shorter peptide
+	 * @param score the linear score of the shorter peptide
+	 * @return the linear score of the longer peptide
+	 */
+	public int extend(int[] prefixMass, int length, int score) {
+		// loop over each subpeptide that ends with the new amino acid
+		for (int i = 0; i <= length; i++) {
+			int mass = prefixMass[length + 1] - prefixMass[i];
+			int available = count(mass);
+			// it's a match if the shorter peptide left a copy of its mass unused
+			if (available > 0 && occurrences(prefixMass, length, mass, available) < available) score++;
+		}
+
+		return score;
+	}
+
+	/**
+	 * <h1>Counts how many subpeptides of a peptide have a mass</h1>
+	 * Walks two pointers along the prefix masses, so each pair is only looked at once.
+	 * <br>
+	 * precondition: prefixMass[0 ... length] is strictly increasing, mass > 0
+	 * @param prefixMass the prefix masses of the peptide
+	 * @param length the number of amino acids in the peptide
+	 * @param mass the mass to look for
+	 * @param limit stop counting once this many have been found
+	 * @return how many subpeptides have the mass (at most limit)
+	 */
+	private static int occurrences(int[] prefixMass, int length, int mass, int limit) {
+		// initialize return variable
+		int found = 0;
+
+		// for each start, move the end up until the subpeptide is at least as heavy as mass
+		for (int start = 0, end = 0; start < length && found < limit; start++) {
+			while (end <= length && prefixMass[end] - prefixMass[start] < mass) end++;
+			if (end > length) break;
+			if (prefixMass[end] - prefixMass[start] == mass) found++;
+		}
+
+		return found;
+	}
+
+	/**
+	 * <h1>Scores a full peptide's cyclic spectrum, given its linear score</h1>
+	 * Only the subpeptides that wrap around the end are left to add. Since those can repeat masses
+	 * with each other, how many copies of each mass they've used so far is kept in a count array
+	 * (this is only done once per full-mass peptide, so the array isn't kept around).
+	 * <br>
+	 * precondition: prefixMass[0 ... length] is strictly increasing
+	 * <br>
+	 * calls: count, occurrences
+	 * @param prefixMass the prefix masses of the peptide
+	 * @param length the number of amino acids in the peptide
+	 * @param score the linear score of the peptide
+	 * @return the cyclic score of the peptide
+	 */
+	public int cyclicScore(int[] prefixMass, int length, int score) {
+		int total = prefixMass[length];
+		// how many copies of each mass the wrapping subpeptides have used
+		int[] used = new int[counts.length];
+
+		// loop over each subpeptide that wraps around (all but the insides i to j)
+		for (int i = 1; i < length; i++) {
+			for (int j = i + 1; j < length; j++) {
+				int mass = total - (prefixMass[j] - prefixMass[i]);
+				int available = count(mass);
+				if (available == 0) continue;
+
+				// it's a match if neither the linear subpeptides nor the earlier wrapping ones used it up
+				if (used[mass] < available
+						&& occurrences(prefixMass, length, mass, available - used[mass]) + used[mass] < available)
+					score++;
+				used[mass]++;
+			}
+		}
+
+		return score;
+	}
+
+	/**
+	 * <h1>Scores a peptide from scratch</h1>
+	 * Works out the prefix masses, then builds up the linear score one amino acid at a time,
+	 * and adds on the wrapping subpeptides if needed.
+	 * <br>
+	 * precondition: every amino acid's mass is > 0
+	 * <br>
+	 * calls: emptyScore, extend, cyclicScore
+	 * @param peptide the peptide to score
+	 * @param cyclo whether to use a linear or cyclic spectrum
+	 * @return the number of masses (considering multiplicity) that match between the spectra
+	 */
+	public int score(int[] peptide, boolean cyclo) {
+		// initialize array of prefix masses (masses up to this index in peptide)
+		int[] prefixMass = new int[peptide.length + 1];
+		// start from the empty peptide
+		int score = emptyScore();
+
+		// add each amino acid, scoring the new subpeptides
+		for (int i = 0; i < peptide.length; i++) {
+			prefixMass[i + 1] = prefixMass[i] + peptide[i];
+			score = extend(prefixMass, i, score);
+		}
+
+		return cyclo ? cyclicScore(prefixMass, peptide.length, score) : score;
+	}
+}
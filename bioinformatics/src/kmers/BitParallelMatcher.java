@@ -0,0 +1,163 @@
+package kmers;
+
+// for lists that grow as needed
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// finds every place a pattern appears in a genome with at most d mismatches (Hamming distance),
+// using the bit-parallel shift-and method with mismatches (Wu-Manber)
+// for each j <= d, bit i of state j is set if the first i + 1 bases of the pattern end at the
+// current base with at most j mismatches, so each base of the genome is handled with a few
+// shifts, ANDs and ORs per state instead of a substring and a char-by-char comparison
+// patterns of up to 64 bases use one long per state, longer ones carry bits across several
+// any char in the genome that is not ACGT (like N) mismatches everything
+class BitParallelMatcher {
+	// the pattern length, the most mismatches allowed, and the number of longs per state
+	private final int m, d, words;
+	// for each base, which positions of the pattern hold it
+	private final long[][] masks;
+	// the current states, one per number of mismatches
+	private final long[][] states;
+
+	// sets up a matcher for a pattern
+	// d bigger than the pattern's length is the same as d = the pattern's length
+	// PRECONDITION: pattern is not empty, d >= 0
+	public BitParallelMatcher(String pattern, int d) {
+		// check for argument validity
+		if (pattern == null || pattern.isEmpty())
+			throw new IllegalArgumentException("Can't match an empty pattern");
+		if (d < 0)
+			throw new IllegalArgumentException("Can't allow " + d + " mismatches");
+
+		this.m = pattern.length();
+		this.d = Math.min(d, m);
+		this.words = (m + 63) / 64;
+		this.masks = new long[4][words];
+		this.states = new long[this.d + 1][words];
+
+		// mark where each base appears in the pattern
+		for (int i = 0; i < m; i++) {
+			int c = KmerCounter.code(pattern.charAt(i));
+			if (c < 0)
+				throw new IllegalArgumentException("Requires ACGT patterns, not '" + pattern.charAt(i) + "'");
+			masks[c][i / 64] |= 1L << (i % 64);
+		}
+	}
+
+	// getter for the pattern length
+	public int length() {
+		return m;
+	}
+
+	// clears all states so that a new genome can be read
+	public void reset() {
+		for (long[] state : states) Arrays.fill(state, 0);
+	}
+
+	// reads the next base of a genome
+	// returns whether the whole pattern ends at this base with at most d mismatches
+	// CALLS: KmerCounter.code
+	public boolean next(char base) {
+		int c = KmerCounter.code(base);
+
+		// the one-word case, kept separate since it is by far the most common
+		if (words == 1) {
+			long mask = c < 0 ? 0 : masks[c][0];
+			// go from most mismatches down, so the state below is still the old one
+			for (int j = d; j > 0; j--)
+				states[j][0] = (((states[j][0] << 1) | 1) & mask) | ((states[j - 1][0] << 1) | 1);
+			states[0][0] = ((states[0][0] << 1) | 1) & mask;
+
+			return (states[d][0] & (1L << (m - 1))) != 0;
+		}
+
+		for (int j = d; j >= 0; j--) {
+			long[] state = states[j];
+			long[] below = j > 0 ? states[j - 1] : null;
+
+			// go from the top word down, so each word can still see the old bit carried from below
+			for (int w = words - 1; w >= 0; w--) {
+				long carry = w == 0 ? 1 : state[w - 1] >>> 63;
+				long mask = c < 0 ? 0 : masks[c][w];
+				long next = ((state[w] << 1) | carry) & mask;
+
+				// a mismatch can take any state with one fewer mismatch forward
+				if (below != null) next |= (below[w] << 1) | (w == 0 ? 1 : below[w - 1] >>> 63);
+
+				state[w] = next;
+			}
+		}
+
+		return (states[d][(m - 1) / 64] & (1L << ((m - 1) % 64))) != 0;
+	}
+
+	// lists all the indexes where k-mers of a genome have at most d differences from a pattern
+	// PRECONDITION: pattern is not empty, d >= 0
+	// CALLS: next
+	public static ArrayList<Integer> matchStarts(CharSequence genome, String pattern, int d) {
+		// initialize return variable
+		ArrayList<Integer> starts = new ArrayList<Integer>();
+
+		BitParallelMatcher matcher = new BitParallelMatcher(pattern, d);
+		// a match ending at i started pattern's length - 1 bases before
+		for (int i = 0, n = genome.length(); i < n; i++)
+			if (matcher.next(genome.charAt(i))) starts.add(i - matcher.m + 1);
+
+		return starts;
+	}
+
+	// counts how many k-mers of a genome have at most d differences from a pattern
+	// PRECONDITION: pattern is not empty, d >= 0
+	// CALLS: next
+	public static int matchCount(CharSequence genome, String pattern, int d) {
+		// initialize return variable
+		int count = 0;
+
+		BitParallelMatcher matcher = new BitParallelMatcher(pattern, d);
+		for (int i = 0, n = genome.length(); i < n; i++) if (matcher.next(genome.charAt(i))) count++;
+
+		return count;
+	}
+
+	// lists the match starts of many patterns at once, reading the genome only once
+	// returns a list of starts for each pattern, in the same order as patterns
+	// PRECONDITION: no pattern is empty, d >= 0
+	// CALLS: next
+	public static ArrayList<ArrayList<Integer>> matchStarts(CharSequence genome, String[] patterns, int d) {
+		// initialize return variable and a matcher per pattern
+		ArrayList<ArrayList<Integer>> starts = new ArrayList<ArrayList<Integer>>(patterns.length);
+		BitParallelMatcher[] matchers = new BitParallelMatcher[patterns.length];
+		for (int p = 0; p < patterns.length; p++) {
+			starts.add(new ArrayList<Integer>());
+			matchers[p] = new BitParallelMatcher(patterns[p], d);
+		}
+
+		// feed every base to every matcher
+		for (int i = 0, n = genome.length(); i < n; i++) {
+			char base = genome.charAt(i);
+			for (int p = 0; p < matchers.length; p++)
+				if (matchers[p].next(base)) starts.get(p).add(i - matchers[p].m + 1);
+		}
+
+		return starts;
+	}
+
+	// counts the matches of many patterns at once, reading the genome only once
+	// returns the counts in a parallel array to patterns
+	// PRECONDITION: no pattern is empty, d >= 0
+	// CALLS: next
+	public static int[] matchCounts(CharSequence genome, String[] patterns, int d) {
+		// initialize return variable and a matcher per pattern
+		int[] counts = new int[patterns.length];
+		BitParallelMatcher[] matchers = new BitParallelMatcher[patterns.length];
+		for (int p = 0; p < patterns.length; p++) matchers[p] = new BitParallelMatcher(patterns[p], d);
+
+		// feed every base to every matcher
+		for (int i = 0, n = genome.length(); i < n; i++) {
+			char base = genome.charAt(i);
+			for (int p = 0; p < matchers.length; p++) if (matchers[p].next(base)) counts[p]++;
+		}
+
+		return counts;
+	}
+}
@@ -8,6 +8,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
+// for genomes packed 2 bits per base
+import sequences.PackedDNA;
+
 // general PRECONDTION for all methods: strings only contain ACGT in various combinations
 // k-mer: string of length k
 class FrequencyArray {
@@ -76,71 +79,46 @@ class FrequencyArray {
 	}
 		
 	// creates a frequency array for how often each k-mer appears in a longer string
-	// PRECONDITION: genome is not empty, genome's length >= k, k > 0
-	// CALLS: patternToNumber
+	// each k-mer's number is rolled along from the last one instead of made from a substring
+	// PRECONDITION: genome is not empty, genome's length >= k, 0 < k < 16
+	// CALLS: KmerCounter
 	public static int[] computingFrequencies(String genome, int k) {
-		// initialize return variable, with enough room for every possible k-mer
-		int[] frequencies = new int[(int) Math.pow(4, k)];
-		
-		// loop over every k-mer in the longer string
-		for (int i = 0, n = genome.length(); i <= n - k; i++) {
-			// add its count to the frequency array
-			frequencies[patternToNumber(genome.substring(i, i + k))]++;
-		}
-		
-		return frequencies;
+		// count into a dense table, with enough room for every possible k-mer
+		return new KmerCounter(k, true).countAll(genome).getFrequencies();
+	}
+
+	// creates a frequency array for how often each k-mer appears in a packed genome
+	// PRECONDITION: genome's length >= k, 0 < k < 16
+	// CALLS: KmerCounter
+	public static int[] computingFrequencies(PackedDNA genome, int k) {
+		// count into a dense table, with enough room for every possible k-mer
+		return new KmerCounter(k, true).countAll(genome).getFrequencies();
 	}
 
 	// finds all most-frequent k-mers in a longer string that appear at least t times
-	// PRECONDITION: genome is not empty, genome's length > k + t, k > 0, t >= 0
-	// CALLS: computingFrequencies, numberToPattern
+	// k > 13 are counted in a map instead of a 4^k array, so whole chromosomes fit
+	// PRECONDITION: genome is not empty, genome's length > k + t, 0 < k < 32, t > 0
+	// CALLS: KmerCounter
 	public static ArrayList<String> frequentWords(String genome, int k, int t) {
-		// initialize return variable
-		ArrayList<String> frequent = new ArrayList<String>();
-		
-		// create the frequency array for this longer string
-		int[] freqArray = computingFrequencies(genome, k);
-		
-		// loop over the frequency array
-		for (int i = 0, n = freqArray.length; i < n; i++) {
-			// if the corresponding k-mer appeared at least t times, add it to the list of frequent ones
-			if (freqArray[i] >= t) frequent.add(numberToPattern(i, k));
-		}
-		
-		return frequent;
+		// count every k-mer, then list the ones that appeared at least t times
+		return new KmerCounter(k).countAll(genome).patternsAtLeast(t);
+	}
+
+	// finds all k-mers in a packed genome that appear at least t times
+	// PRECONDITION: genome's length >= k, 0 < k < 32, t > 0
+	// CALLS: KmerCounter
+	public static ArrayList<String> frequentWords(PackedDNA genome, int k, int t) {
+		// count every k-mer, then list the ones that appeared at least t times
+		return new KmerCounter(k).countAll(genome).patternsAtLeast(t);
 	}
 
 	// finds all the k-mers in a longer string that appear at least t times in a window of L length
-	// PRECONDITON: genome is not empty, genome's length >= L, L >= k + t, k > 0, t > 0
-	// CALLS: frequentWords, patternMatching
+	// slides a single window along, updating counts for the k-mer leaving and the one entering,
+	// instead of finding frequent k-mers first and then searching for each one
+	// PRECONDITON: genome is not empty, genome's length >= L, L >= k, 0 < k < 32, t > 0
+	// CALLS: KmerCounter
 	public static ArrayList<String> clumpFinder(String genome, int k, int L, int t) {
-		// initialize return variable
-		ArrayList<String> clumps = new ArrayList<String>();
-		
-		// find all at least t-frequent k-mers spread out over the longer string
-		ArrayList<String> frequent = frequentWords(genome, k, t);
-		// used to track starts each time in the loop
-		ArrayList<Integer> starts = new ArrayList<Integer>();
-		
-		// check each of these frequent k-mers
-		for (String freq : frequent) {
-			// find every index where the k-mer begins
-			starts.clear();
-			starts = patternMatching(genome, freq);
-			
-			// loop through the list of starts
-			for (int j = 0; j <= starts.size() - t; j++) {
-				// check t indexes ahead of the current index, if that k-mer is in the L-window
-				if (starts.get(j) >= starts.get(j + t - 1) - L + k) {
-					// add it to the list of clumpers
-					clumps.add(freq);
-					// stop checking for this k-mer
-					break;
-				}
-			}
-		}
-		
-		return clumps;
+		return new KmerCounter(k).clumpPatterns(genome, L, t);
 	}
 
 	// reads a file in as a string, getting rid of line breaks
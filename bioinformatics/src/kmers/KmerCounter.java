@@ -0,0 +1,341 @@
+package kmers;
+
+// for lists that grow as needed
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// for genomes packed 2 bits per base
+import sequences.PackedDNA;
+
+// counts every k-mer in a genome in one streaming pass
+// each window's number (same as FrequencyArray.patternToNumber) is rolled along from the last one
+// with a shift, an OR and a mask, so no substrings are made and nothing is recomputed
+// small k use a dense int[4^k] table, bigger k use an open-addressing long->int map
+// any char that is not ACGT (like N) breaks the genome: no k-mer is counted across it
+public class KmerCounter {
+	// the biggest k that gets a dense table (4^13 ints = 256 MB)
+	public static final int DENSE_MAX_K = 13;
+	// the biggest k that fits in a long
+	public static final int MAX_K = 32;
+
+	// marks a slot in the map that has never held a k-mer
+	// (the all-T 32-mer is the same number, so it is counted outside the map)
+	private static final long EMPTY = -1;
+	// the map is doubled once it is this full
+	private static final double MAX_LOAD = 0.5;
+
+	// the length of k-mers being counted
+	private final int k;
+	// keeps just the last k bases of a rolling number
+	private final long mask;
+
+	// counts indexed by k-mer number, or null if the map is used
+	private int[] dense;
+	// the map's k-mer numbers and their parallel counts, or null if the dense table is used
+	private long[] keys;
+	private int[] values;
+	// the number of k-mers ever put in the map
+	private int size;
+	// the count of the k-mer numbered EMPTY, and whether it has been seen
+	private int emptyCount;
+	private boolean emptySeen;
+
+	// sets up a counter, choosing a dense table for k <= DENSE_MAX_K
+	// PRECONDITION: 0 < k <= MAX_K
+	public KmerCounter(int k) {
+		this(k, k <= DENSE_MAX_K);
+	}
+
+	// sets up a counter, forcing a dense table or a map
+	// PRECONDITION: 0 < k <= MAX_K, 4^k fits in an array if dense is true
+	public KmerCounter(int k, boolean dense) {
+		// check for argument validity
+		if (k <= 0 || k > MAX_K)
+			throw new IllegalArgumentException("Can't count " + k + "-mers");
+		if (dense && k > 15)
+			throw new IllegalArgumentException("A dense table of " + k + "-mers won't fit in an array");
+
+		this.k = k;
+		this.mask = k == MAX_K ? -1L : (1L << (2 * k)) - 1;
+
+		if (dense) this.dense = new int[1 << (2 * k)];
+		else {
+			keys = new long[1 << 10];
+			Arrays.fill(keys, EMPTY);
+			values = new int[keys.length];
+		}
+	}
+
+	// converts a base to its 2-bit number, or -1 if it isn't ACGT
+	public static int code(char base) {
+		switch (base) {
+		case 'A': case 'a': return 0;
+		case 'C': case 'c': return 1;
+		case 'G': case 'g': return 2;
+		case 'T': case 't': return 3;
+		default: return -1;
+		}
+	}
+
+	// getter for k
+	public int getK() {
+		return k;
+	}
+
+	// whether this counter uses the dense table
+	public boolean isDense() {
+		return dense != null;
+	}
+
+	// slides over a genome, adding one to the count of every k-mer
+	// CALLS: code, add
+	public KmerCounter countAll(CharSequence genome) {
+		// the rolling number of the current window
+		long kmer = 0;
+		// how many valid bases in a row end at the current one
+		int run = 0;
+
+		// loop over every base in the genome
+		for (int i = 0, n = genome.length(); i < n; i++) {
+			int c = code(genome.charAt(i));
+
+			// a non-ACGT char starts the window over
+			if (c < 0) {
+				run = 0;
+				continue;
+			}
+
+			// push the new base on the right, drop the oldest one off the left
+			kmer = ((kmer << 2) | c) & mask;
+			// once the window is full, count it
+			if (++run >= k) add(kmer, 1);
+		}
+
+		return this;
+	}
+
+	// slides over a packed genome, adding one to the count of every k-mer
+	// CALLS: add
+	public KmerCounter countAll(PackedDNA genome) {
+		// the rolling number of the current window
+		long kmer = 0;
+
+		// loop over every base in the genome
+		for (int i = 0, n = genome.length(); i < n; i++) {
+			// push the new base on the right, drop the oldest one off the left
+			kmer = ((kmer << 2) | genome.codeAt(i)) & mask;
+			// once the window is full, count it
+			if (i >= k - 1) add(kmer, 1);
+		}
+
+		return this;
+	}
+
+	// changes the count of a k-mer, returning the new count
+	// PRECONDITION: 0 <= kmer < 4^k
+	public int add(long kmer, int amount) {
+		// the dense table is indexed directly
+		if (dense != null) return dense[(int) kmer] += amount;
+		// the k-mer numbered EMPTY can't go in the map
+		if (kmer == EMPTY) {
+			emptySeen = true;
+			return emptyCount += amount;
+		}
+
+		// grow the map before it gets too full
+		if (size + 1 > keys.length * MAX_LOAD) resize();
+
+		int slot = slot(keys, kmer);
+		// if this k-mer hasn't been seen before, claim the slot
+		if (keys[slot] == EMPTY) {
+			keys[slot] = kmer;
+			size++;
+		}
+
+		return values[slot] += amount;
+	}
+
+	// looks up the count of a k-mer
+	// PRECONDITION: 0 <= kmer < 4^k
+	public int count(long kmer) {
+		if (dense != null) return dense[(int) kmer];
+		if (kmer == EMPTY) return emptyCount;
+
+		int slot = slot(keys, kmer);
+		return keys[slot] == EMPTY ? 0 : values[slot];
+	}
+
+	// finds the highest count of any k-mer
+	public int maxCount() {
+		// initialize return variable
+		int max = emptyCount;
+
+		int[] counts = dense != null ? dense : values;
+		for (int count : counts) if (count > max) max = count;
+
+		return max;
+	}
+
+	// lists the numbers of all k-mers that were counted at least t times, sorted
+	// NOTE: with t = 0, the map only lists k-mers that were seen, unlike the dense table
+	public long[] atLeast(int t) {
+		// initialize return variable
+		long[] frequent = new long[16];
+		int found = 0;
+
+		// loop over every spot that could hold a count
+		int[] counts = dense != null ? dense : values;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] < t || (dense == null && keys[i] == EMPTY)) continue;
+
+			if (found == frequent.length) frequent = Arrays.copyOf(frequent, found * 2);
+			frequent[found++] = dense != null ? i : keys[i];
+		}
+		if (emptySeen && emptyCount >= t) {
+			if (found == frequent.length) frequent = Arrays.copyOf(frequent, found + 1);
+			frequent[found++] = EMPTY;
+		}
+
+		frequent = Arrays.copyOf(frequent, found);
+		// the map isn't in k-mer order, so sort it into the same order as the dense table
+		if (dense == null) sortUnsigned(frequent, found);
+
+		return frequent;
+	}
+
+	// lists all k-mers that were counted at least t times, in lexicographic order
+	// CALLS: atLeast
+	public ArrayList<String> patternsAtLeast(int t) {
+		return toPatterns(atLeast(t));
+	}
+
+	// finds every k-mer that appears at least t times in some window of L bases
+	// the window slides one base at a time: the k-mer that falls off the left is taken away and
+	// the one that comes in on the right is added, so each base is only looked at twice
+	// counts only ever go up by one, so k-mers are marked just when a count rises to exactly t
+	// (in a bitset if the table is dense), which keeps a repetitive genome from marking every window
+	// PRECONDITION: nothing has been counted yet, L >= k, t > 0
+	// CALLS: code, add
+	public long[] clumps(CharSequence genome, int L, int t) {
+		// check for argument validity
+		if (L < k)
+			throw new IllegalArgumentException("A " + L + "-long window can't hold a " + k + "-mer");
+
+		// which k-mers have reached t, for the dense table
+		BitSet reached = dense != null ? new BitSet(dense.length) : null;
+		// which k-mers have reached t (more than once if a count falls back and rises again), for the map
+		long[] found = new long[16];
+		int numFound = 0;
+
+		// the rolling numbers of the k-mer coming in and the one falling off
+		long in = 0, out = 0;
+		// how many valid bases in a row end at each
+		int inRun = 0, outRun = 0;
+		// how far behind the falling-off k-mer ends
+		int lag = L - k + 1;
+
+		// loop over every base in the genome, as the right end of the window
+		for (int i = 0, n = genome.length(); i < n; i++) {
+			// first take away the k-mer that no longer fits in the window
+			if (i >= lag) {
+				int c = code(genome.charAt(i - lag));
+				if (c < 0) outRun = 0;
+				else {
+					out = ((out << 2) | c) & mask;
+					if (++outRun >= k) add(out, -1);
+				}
+			}
+
+			// then add the k-mer that just came in
+			int c = code(genome.charAt(i));
+			if (c < 0) {
+				inRun = 0;
+				continue;
+			}
+			in = ((in << 2) | c) & mask;
+			if (++inRun < k || add(in, 1) != t) continue;
+
+			// this k-mer clumps, so mark it
+			if (reached != null) reached.set((int) in);
+			else {
+				if (numFound == found.length) found = Arrays.copyOf(found, numFound * 2);
+				found[numFound++] = in;
+			}
+		}
+
+		// bits come out of the bitset already in k-mer order
+		if (reached != null) return reached.stream().asLongStream().toArray();
+
+		// sort the map's marks, then squash repeats
+		sortUnsigned(found, numFound);
+		int unique = 0;
+		for (int i = 0; i < numFound; i++)
+			if (unique == 0 || found[i] != found[unique - 1]) found[unique++] = found[i];
+
+		return Arrays.copyOf(found, unique);
+	}
+
+	// lists every k-mer that appears at least t times in some window of L bases, in lexicographic order
+	// PRECONDITION: nothing has been counted yet, L >= k, t > 0
+	// CALLS: clumps
+	public ArrayList<String> clumpPatterns(CharSequence genome, int L, int t) {
+		return toPatterns(clumps(genome, L, t));
+	}
+
+	// converts k-mer numbers back to strings
+	private ArrayList<String> toPatterns(long[] kmers) {
+		// initialize return variable
+		ArrayList<String> patterns = new ArrayList<String>(kmers.length);
+
+		for (long kmer : kmers) patterns.add(PackedDNA.decode(kmer, k));
+
+		return patterns;
+	}
+
+	// getter for the dense table (not a copy, so that FrequencyArray can hand it straight back)
+	// PRECONDITION: this counter is dense
+	public int[] getFrequencies() {
+		if (dense == null)
+			throw new IllegalStateException("A " + k + "-mer map has no frequency array");
+
+		return dense;
+	}
+
+	// sorts the first n k-mer numbers into k-mer order
+	// 32-mers starting with G or T are negative longs, so the sign bit is flipped for the sort
+	private static void sortUnsigned(long[] kmers, int n) {
+		for (int i = 0; i < n; i++) kmers[i] ^= Long.MIN_VALUE;
+		Arrays.sort(kmers, 0, n);
+		for (int i = 0; i < n; i++) kmers[i] ^= Long.MIN_VALUE;
+	}
+
+	// finds the slot a k-mer is in, or the empty slot it would go in, using linear probing
+	private static int slot(long[] keys, long kmer) {
+		// scramble the bits with a multiply so neighboring k-mers spread out, keeping the top ones
+		int slot = (int) ((kmer * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(keys.length)));
+
+		// walk forward until the k-mer or an empty slot turns up
+		while (keys[slot] != EMPTY && keys[slot] != kmer) slot = (slot + 1) & (keys.length - 1);
+
+		return slot;
+	}
+
+	// doubles the size of the map, putting every k-mer back in
+	private void resize() {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		values = new int[keys.length];
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == EMPTY) continue;
+
+			int slot = slot(keys, oldKeys[i]);
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+}
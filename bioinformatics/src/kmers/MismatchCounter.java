@@ -0,0 +1,127 @@
+package kmers;
+
+// for splitting the genome up between threads
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// counts how often each k-mer appears in a genome with at most d mismatches, on many threads
+// the genome is split into about one chunk per thread, each chunk rolls along its k-mer numbers
+// (same as FrequencyArray.patternToNumber) and adds one to every d-neighbor of each k-mer,
+// which are made by flipping 2-bit digits of the number instead of building strings
+// each chunk has its own int[4^k], and chunks are summed as they are joined back together
+// d-neighbors: strings of equal length that differ by as many as d chars
+// any char that is not ACGT (like N) breaks the genome: no k-mer is counted across it
+class MismatchCounter extends RecursiveTask<int[]> {
+	private static final long serialVersionUID = 1L;
+
+	// the biggest k whose counts fit in an array
+	public static final int MAX_K = 15;
+
+	// the genome being counted
+	private final CharSequence genome;
+	// the length of k-mers and the number of mismatches allowed
+	private final int k, d;
+	// the first k-mer start this chunk counts, and the one it stops before
+	private final int from, to;
+	// a chunk with at most this many k-mer starts is counted instead of split
+	private final int chunk;
+
+	// sets up a chunk of counting
+	private MismatchCounter(CharSequence genome, int k, int d, int from, int to, int chunk) {
+		this.genome = genome;
+		this.k = k;
+		this.d = d;
+		this.from = from;
+		this.to = to;
+		this.chunk = chunk;
+	}
+
+	// creates a frequency array with how often a d-neighbor of each k-mer appears in a genome
+	// uses the common ForkJoinPool
+	// PRECONDITION: 0 < k <= MAX_K, 0 <= d <= k
+	// CALLS: count
+	public static int[] count(CharSequence genome, int k, int d) {
+		return count(genome, k, d, ForkJoinPool.commonPool());
+	}
+
+	// creates a frequency array with how often a d-neighbor of each k-mer appears in a genome
+	// PRECONDITION: 0 < k <= MAX_K, 0 <= d <= k
+	public static int[] count(CharSequence genome, int k, int d, ForkJoinPool pool) {
+		// check for argument validity
+		if (k <= 0 || k > MAX_K)
+			throw new IllegalArgumentException("Can't count " + k + "-mers in an array");
+		if (d < 0 || d > k)
+			throw new IllegalArgumentException("Can't allow " + d + " mismatches in a " + k + "-mer");
+
+		// the number of k-mer starts in the genome
+		int starts = Math.max(0, genome.length() - k + 1);
+		// aim for one chunk per thread, since each chunk needs its own 4^k array
+		int chunk = Math.max(1, (starts + pool.getParallelism() - 1) / pool.getParallelism());
+
+		return pool.invoke(new MismatchCounter(genome, k, d, 0, starts, chunk));
+	}
+
+	// counts this chunk, or splits it in half and sums the halves
+	@Override
+	protected int[] compute() {
+		// small enough to count directly
+		if (to - from <= chunk) return countChunk();
+
+		// split in half, counting the right half on another thread
+		int middle = (from + to) >>> 1;
+		MismatchCounter right = new MismatchCounter(genome, k, d, middle, to, chunk);
+		right.fork();
+		int[] counts = new MismatchCounter(genome, k, d, from, middle, chunk).compute();
+
+		// add the right half's counts into the left half's
+		int[] rightCounts = right.join();
+		for (int i = 0; i < counts.length; i++) counts[i] += rightCounts[i];
+
+		return counts;
+	}
+
+	// counts the d-neighbors of every k-mer starting in [from, to)
+	// CALLS: KmerCounter.code, addNeighbors
+	private int[] countChunk() {
+		// initialize return variable, with enough room for every possible k-mer
+		int[] counts = new int[1 << (2 * k)];
+		// keeps just the last k bases of the rolling number
+		long mask = (1L << (2 * k)) - 1;
+
+		// the rolling number of the current window, and how many valid bases in a row end it
+		long kmer = 0;
+		int run = 0;
+
+		// loop over every base of every k-mer starting in this chunk
+		for (int i = from, n = to + k - 1; i < n; i++) {
+			int c = KmerCounter.code(genome.charAt(i));
+
+			// a non-ACGT char starts the window over
+			if (c < 0) {
+				run = 0;
+				continue;
+			}
+
+			kmer = ((kmer << 2) | c) & mask;
+			if (++run >= k) addNeighbors(counts, (int) kmer, 0, d);
+		}
+
+		return counts;
+	}
+
+	// adds one to the count of every string within d mismatches of a k-mer,
+	// changing only digits at or after a position so that no neighbor is counted twice
+	private void addNeighbors(int[] counts, int kmer, int position, int d) {
+		counts[kmer]++;
+		if (d == 0) return;
+
+		// try every other base at every later position
+		for (int i = position; i < k; i++) {
+			int shift = 2 * (k - 1 - i);
+			int base = (kmer >>> shift) & 3;
+
+			for (int other = 0; other < 4; other++)
+				if (other != base) addNeighbors(counts, kmer ^ ((base ^ other) << shift), i + 1, d - 1);
+		}
+	}
+}
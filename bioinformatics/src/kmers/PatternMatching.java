@@ -105,36 +105,12 @@ class PatternMatching {
 	}
 
 	// finds all the k-mers in a longer string that appear at least t times in a window of L length
-	// PRECONDITON: genome is not empty, genome's length >= L, L >= k + t, k > 0, t > 0
-	// CALLS: frequentWords, patternMatching
+	// slides a single window along, updating counts for the k-mer leaving and the one entering,
+	// instead of finding frequent k-mers first and then searching for each one
+	// PRECONDITON: genome is not empty, genome's length >= L, L >= k, 0 < k < 32, t > 0
+	// CALLS: KmerCounter
 	public static ArrayList<String> clumpFinder(String genome, int k, int L, int t) {
-		// initialize return variable
-		ArrayList<String> clumps = new ArrayList<String>();
-		
-		// find all at least t-frequent k-mers spread out over the longer string
-		ArrayList<String> frequent = frequentWords(genome, k, t);
-		// used to track starts each time in the loop
-		ArrayList<Integer> starts = new ArrayList<Integer>();
-		
-		// check each of these frequent k-mers
-		for (String freq : frequent) {
-			// find every index where the k-mer begins
-			starts.clear();
-			starts = patternMatching(genome, freq);
-			
-			// loop through the list of starts
-			for (int j = 0; j <= starts.size() - t; j++) {
-				// check t indexes ahead of the current index, if that k-mer is in the L-window
-				if (starts.get(j) >= starts.get(j + t - 1) - L + k) {
-					// add it to the list of clumpers
-					clumps.add(freq);
-					// stop checking for this k-mer
-					break;
-				}
-			}
-		}
-		
-		return clumps;
+		return new KmerCounter(k).clumpPatterns(genome, L, t);
 	}
 
 	// reads a file in as a string, getting rid of line breaks
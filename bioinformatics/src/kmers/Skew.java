@@ -6,8 +6,12 @@ import java.util.ArrayList;
 // for reading from files
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
+// for genomes packed 2 bits per base
+import sequences.PackedDNA;
+
 // general PRECONDTION for all methods: strings only contain ACGT in various combinations
 // k-mer: string of length k
 class Skew {
@@ -54,6 +58,13 @@ class Skew {
 		return minI;
 	}
 
+	// finds positions that minimize #G-#C in a (possibly FASTA) file without reading it all into memory
+	// PRECONDITION: fasta is a valid location
+	// CALLS: StreamingSkew
+	public static long[] minimumSkew(Path fasta) throws IOException {
+		return StreamingSkew.scan(fasta, 0).getMinimumPositions();
+	}
+
 	// calculates the number of differing positions in two strings
 	// PRECONDITION: strings are equal length
 	public static int hammingDistance(String a, String b) {
@@ -124,36 +135,32 @@ class Skew {
 		
 	// lists all the indexes where k-mers of a longer string have at most d differences from a passed-in string
 	// PRECONDITION: pattern is not empty, genome's length >= pattern's, d <= pattern's length, d >= 0
-	// CALLS: hammingDistance
+	// CALLS: BitParallelMatcher
 	public static ArrayList<Integer> approximatePatternMatching(String genome, String pattern, int d) {
-		// initialize return variable
-		ArrayList<Integer> starts = new ArrayList<Integer>();
-
-		// loop over every k-mer in the longer string
-		for (int i = 0, n = genome.length() - pattern.length(); i <= n; i++) {
-			// if this k-mer has at most d differences from passed-in string
-			// add its beginning index to return list
-			if (hammingDistance(pattern, genome.substring(i, i + pattern.length())) <= d) starts.add(i);
-		}
-		
-		return starts;
+		return BitParallelMatcher.matchStarts(genome, pattern, d);
 	}
 
 	// counts how many k-mers of a longer string have at most d differences from a passed-in string
 	// PRECONDITION: pattern is not empty, genome's length >= pattern's, d <= pattern's length, d >= 0
-	// CALLS: hammingDistance
+	// CALLS: BitParallelMatcher
 	public static int approximatePatternCount(String genome, String pattern, int d) {
-		// initialize return variable
-		int count = 0;
+		return BitParallelMatcher.matchCount(genome, pattern, d);
+	}
 
-		// loop over every k-mer in the longer string
-		for (int i = 0, n = genome.length() - pattern.length(); i <= n; i++) {
-			// if this k-mer has at most d differences from passed-in string
-			// increment the counter
-			if (hammingDistance(pattern, genome.substring(i, i + pattern.length())) <= d) count++;
-		}
-		
-		return count;
+	// lists the indexes where k-mers of a longer string have at most d differences from each of many strings
+	// reads the longer string once for all of them, returning a list of indexes per passed-in string
+	// PRECONDITION: no pattern is empty, d >= 0
+	// CALLS: BitParallelMatcher
+	public static ArrayList<ArrayList<Integer>> approximatePatternMatching(String genome, String[] patterns, int d) {
+		return BitParallelMatcher.matchStarts(genome, patterns, d);
+	}
+
+	// counts how many k-mers of a longer string have at most d differences from each of many strings
+	// reads the longer string once for all of them, returning a parallel array of counts
+	// PRECONDITION: no pattern is empty, d >= 0
+	// CALLS: BitParallelMatcher
+	public static int[] approximatePatternCount(String genome, String[] patterns, int d) {
+		return BitParallelMatcher.matchCounts(genome, patterns, d);
 	}
 
 	// lists all the d-neighbors of a string
@@ -225,33 +232,16 @@ class Skew {
 
 	// creates a frequency array with how often a d-neighbor of each k-mer appears in a longer string
 	// d-neighbors: strings of equal length that differ by as many as d chars 
-	// PRECONDITION: genome is not empty, genome is longer than k, k >= d, d >= 0, k > 0
-	// CALLS: neighbors, patternToNumber
+	// counted in parallel with neighbors made as numbers, not strings
+	// PRECONDITION: genome is not empty, genome is longer than k, k >= d, d >= 0, 0 < k < 16
+	// CALLS: MismatchCounter
 	public static int[] compFreqWMismatches(String genome, int k, int d) {
-		// initialize return variable, with enough room for every possible k-mer
-		int[] frequencies = new int[(int) Math.pow(4, k)];
-		
-		// used to keep track of what is happening in the loop
-		ArrayList<ArrayList<String>> bothNeighbors = new ArrayList<ArrayList<String>>();
-		ArrayList<String> neighbors = new ArrayList<String>();
-
-		// loop over every k-mer in the longer string
-		for (int i = 0, n = genome.length(); i <= n - k; i++) {
-			// find all the d-neighbors of this k-mer
-			bothNeighbors = neighbors(genome.substring(i, i + k), d);
-			neighbors.addAll(bothNeighbors.get(0));
-			neighbors.addAll(bothNeighbors.get(1));
-			
-			// add each neighbor's count to the frequency array
-			for (String neighbor : neighbors) frequencies[patternToNumber(neighbor)]++;
-		}
-		
-		return frequencies;
+		return MismatchCounter.count(genome, k, d);
 	}
 
 	// finds all most-frequent k-mers with at most d mismatches from them or their reverse complement in a longer string
-	// PRECONDITION: genome is not empty, genome's length >= k, k >= d, k > 0, d >= 0
-	// CALLS: compFreqWMismatches, numberToPattern, reverseComplement, patternToNumber
+	// PRECONDITION: genome is not empty, genome's length >= k, k >= d, 0 < k < 16, d >= 0
+	// CALLS: compFreqWMismatches, numberToPattern
 	public static ArrayList<String> freqWordsWMismatchesRC(String genome, int k, int d) {
 		// initialize return variable
 		ArrayList<String> frequent = new ArrayList<String>();
@@ -260,19 +250,11 @@ class Skew {
 		// maximum occurrences is set to 0
 		int max = 0;
 		
-		// used to keep track of values in the loop
-		String pattern, reverse;
-		int total;
-		
 		// loop over the frequency array
 		for (int i = 0, n = freqArray.length; i < n; i++) {
-			// find the DNA string corresponding to this number...
-			pattern = numberToPattern(i, k);
-			// ... and its reverse complement
-			reverse = reverseComplement(pattern);
-			
-			// calculate the total number of times that either appears with d-mismatches in the longer string
-			total = freqArray[i] + freqArray[patternToNumber(reverse)];
+			// calculate the total number of times that this k-mer or its reverse complement
+			// appears with d-mismatches in the longer string
+			int total = freqArray[i] + freqArray[(int) PackedDNA.reverseComplement(i, k)];
 			
 			// if this total is higher than the maximum recorded
 			if (total > max) {
@@ -280,10 +262,10 @@ class Skew {
 				max = total;
 				// return array set to just this string
 				frequent.clear();
-				frequent.add(pattern);
+				frequent.add(numberToPattern(i, k));
 			}
 			// or if the total IS the max recorded, add string to return array
-			else if (total == max) frequent.add(pattern);
+			else if (total == max) frequent.add(numberToPattern(i, k));
 		}
 		
 		return frequent;
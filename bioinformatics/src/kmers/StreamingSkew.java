@@ -0,0 +1,150 @@
+package kmers;
+
+// for reading from memory-mapped files
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// for writing to files
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+
+// for growing the position and profile arrays
+import java.util.Arrays;
+
+// tracks #G-#C one base at a time, so a genome never has to be held in memory
+// only the running skew, the positions where it is lowest, and (if asked for) the skew
+// every step bases for plotting are kept
+// positions are the number of bases read so far, same as Skew.minimumSkew, as longs so
+// that multi-gigabase files work
+// FASTA headers (lines starting with >) are skipped, and all records are read as one genome
+class StreamingSkew {
+	// how much of a file is mapped into memory at once
+	private static final long WINDOW = 1L << 30;
+
+	// how many bases between recorded profile points, or 0 for no profile
+	private final int step;
+
+	// the number of bases read so far
+	private long length;
+	// the current G-C skew and the lowest one so far
+	private long skew, min;
+	// the positions where the skew is lowest
+	private long[] minPositions = new long[16];
+	private int numMins;
+	// the skew every step bases
+	private long[] profile = new long[16];
+	private int profileSize;
+	// whether the bytes being read are part of a FASTA header
+	private boolean inHeader;
+	// whether the next byte starts a line (only then can a > start a header)
+	private boolean lineStart = true;
+
+	// sets up a tracker that records the skew every step bases (0 for none)
+	// PRECONDITION: step >= 0
+	public StreamingSkew(int step) {
+		// check for argument validity
+		if (step < 0)
+			throw new IllegalArgumentException("Can't record the skew every " + step + " bases");
+
+		this.step = step;
+	}
+
+	// reads a (possibly FASTA) file through memory-mapped windows, tracking its skew
+	// PRECONDITION: fileName is a valid location, step >= 0
+	// CALLS: add
+	public static StreamingSkew scan(String fileName, int step) throws IOException {
+		return scan(Paths.get(fileName), step);
+	}
+
+	// reads a (possibly FASTA) file through memory-mapped windows, tracking its skew
+	// PRECONDITION: path is a valid location, step >= 0
+	// CALLS: add
+	public static StreamingSkew scan(Path path, int step) throws IOException {
+		// initialize return variable
+		StreamingSkew skew = new StreamingSkew(step);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// map a window at a time, since a single map can't go past 2 GB
+			for (long start = 0, size = channel.size(); start < size; start += WINDOW) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start,
+						Math.min(WINDOW, size - start));
+				while (buffer.hasRemaining()) skew.add(buffer.get());
+			}
+		}
+
+		return skew;
+	}
+
+	// reads one byte of a (possibly FASTA) file
+	public void add(byte b) {
+		// skip header lines until they end
+		if (inHeader) {
+			if (b == '\n') {
+				inHeader = false;
+				lineStart = true;
+			}
+			return;
+		}
+		if (b == '>' && lineStart) {
+			inHeader = true;
+			return;
+		}
+		lineStart = b == '\n';
+		// skip line breaks and any other spacing
+		if (b == '\n' || b == '\r' || b == ' ' || b == '\t') return;
+
+		// if this base is G, G-C increases, if C, it decreases
+		if (b == 'G' || b == 'g') skew++;
+		else if (b == 'C' || b == 'c') skew--;
+		length++;
+
+		// if the current skew is less than ever recorded, it is the only minimum so far
+		if (skew < min) {
+			min = skew;
+			numMins = 0;
+		}
+		// record this position if it is a minimum
+		if (skew == min) {
+			if (numMins == minPositions.length) minPositions = Arrays.copyOf(minPositions, numMins * 2);
+			minPositions[numMins++] = length;
+		}
+
+		// record a profile point every step bases
+		if (step > 0 && length % step == 0) {
+			if (profileSize == profile.length) profile = Arrays.copyOf(profile, profileSize * 2);
+			profile[profileSize++] = skew;
+		}
+	}
+
+	// getter for length
+	public long getLength() {
+		return length;
+	}
+
+	// getter for the lowest skew
+	public long getMinimum() {
+		return min;
+	}
+
+	// lists the positions where the skew is lowest, in order
+	public long[] getMinimumPositions() {
+		return Arrays.copyOf(minPositions, numMins);
+	}
+
+	// lists the skew after every step bases
+	public long[] getProfile() {
+		return Arrays.copyOf(profile, profileSize);
+	}
+
+	// writes the profile out as tab-separated position-skew lines, ready for plotting
+	// PRECONDITION: fileName is a valid location
+	public void writeProfile(String fileName) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+			for (int i = 0; i < profileSize; i++) writer.write((long) (i + 1) * step + "\t" + profile[i] + "\n");
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package motifs;
+
+// for sharing the best score between threads
+import java.util.concurrent.atomic.AtomicLong;
+// for handing out subtrees to threads
+import java.util.stream.IntStream;
+
+// general PRECONDTION for all methods: strings only contain ACGT in various combinations
+// k-mer: string of length k
+// median string search over the prefix tree of all k-mers, instead of trying all 4^k of them
+// the distance of a prefix (summed over strings, min over starts) can only grow as it gets longer,
+// so a prefix is cut off as soon as it can't beat the best complete k-mer found so far
+// the tree is split into subtrees a few levels down, which threads search while sharing the bound
+// bases are numbered A=0, C=1, G=2, T=3, so a k-mer's number is the same as brute.numberToPattern's
+class branchAndBound {
+	// the bases, indexed by their numbers
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+	// how many subtrees to aim for per thread, so that threads finishing early can take more
+	private static final int SUBTREES_PER_THREAD = 8;
+
+	// the strings, as arrays of base numbers
+	private final byte[][] dna;
+	// the length of k-mers being searched for
+	private final int k;
+	// the best (distance, k-mer number) so far, packed as distance << 32 | number
+	// comparing packed values prefers a lower distance, then the lexicographically first k-mer
+	private final AtomicLong best;
+
+	// sets up a search
+	// PRECONDITION: every string in dna has length >= k, 0 < k < 16
+	private branchAndBound(String[] dna, int k) {
+		this.k = k;
+		this.dna = new byte[dna.length][];
+
+		// convert every string to base numbers
+		for (int t = 0; t < dna.length; t++) {
+			this.dna[t] = new byte[dna[t].length()];
+			for (int i = 0; i < dna[t].length(); i++) this.dna[t][i] = (byte) code(dna[t].charAt(i));
+		}
+
+		// start the bound off with the first k-mer in the first string, which is a real answer
+		int first = 0;
+		for (int i = 0; i < k; i++) first = (first << 2) | this.dna[0][i];
+		best = new AtomicLong(pack(distance(first), first));
+	}
+
+	// finds a consensus motif of length k
+	// "consensus motif" is a string that minimizes total differences between a string and an array of longer strings
+	// a substring of the proper length is taken from each longer string for this purpose
+	// ties go to the lexicographically first k-mer, same as brute.medianString
+	// PRECONDITION: strings in dna are at least k long, 0 < k < 16
+	public static String medianString(String[] dna, int k) {
+		// check for argument validity
+		if (dna == null || dna.length == 0)
+			throw new IllegalArgumentException("Can't find the median of no strings");
+		if (k <= 0 || k >= 16)
+			throw new IllegalArgumentException("Can't number " + k + "-mers in an int");
+		for (String text : dna)
+			if (text.length() < k)
+				throw new IllegalArgumentException("A " + text.length() + "-long string has no " + k + "-mers");
+
+		branchAndBound search = new branchAndBound(dna, k);
+
+		// go far enough down the tree that every thread gets a few subtrees
+		int subtrees = Runtime.getRuntime().availableProcessors() * SUBTREES_PER_THREAD;
+		int depth = 0;
+		while (depth < k && (1 << (2 * depth)) < subtrees) depth++;
+		final int splitDepth = depth;
+
+		// search each subtree on whatever thread is free
+		IntStream.range(0, 1 << (2 * splitDepth)).parallel().forEach(prefix -> search.searchSubtree(prefix, splitDepth));
+
+		// unpack the best k-mer's number into a string
+		int number = (int) search.best.get();
+		char[] median = new char[k];
+		for (int i = k - 1; i >= 0; i--, number >>>= 2) median[i] = BASES[number & 3];
+
+		return new String(median);
+	}
+
+	// converts a base to its number
+	private static int code(char base) {
+		switch (base) {
+		case 'A': return 0;
+		case 'C': return 1;
+		case 'G': return 2;
+		case 'T': return 3;
+		default:
+			throw new IllegalArgumentException("Requires ACGT DNA strings, not '" + base + "'");
+		}
+	}
+
+	// packs a distance and a k-mer number together
+	private static long pack(int distance, int number) {
+		return ((long) distance << 32) | number;
+	}
+
+	// finds the distance between a full k-mer and the strings
+	private int distance(int kmer) {
+		// initialize return variable
+		int distance = 0;
+
+		for (byte[] text : dna) {
+			// set minimum to maximum difference: the entire k-mer being different
+			int min = k;
+			for (int i = 0; i <= text.length - k && min > 0; i++) {
+				int diff = 0;
+				for (int j = 0; j < k; j++) if (text[i + j] != ((kmer >>> (2 * (k - 1 - j))) & 3)) diff++;
+				if (diff < min) min = diff;
+			}
+			distance += min;
+		}
+
+		return distance;
+	}
+
+	// searches every k-mer starting with some prefix
+	private void searchSubtree(int prefix, int length) {
+		// mismatches[l][t][i] is how many of the first l bases differ from string t starting at i
+		int[][][] mismatches = new int[k + 1][dna.length][];
+		for (int l = 0; l <= k; l++)
+			for (int t = 0; t < dna.length; t++) mismatches[l][t] = new int[dna[t].length - k + 1];
+
+		// walk down to the subtree's root, giving up if it is already out of the running
+		for (int l = 0; l < length; l++) {
+			int base = (prefix >>> (2 * (length - 1 - l))) & 3;
+			if (!extend(mismatches, l, base, prefix >>> (2 * (length - 1 - l)))) return;
+		}
+
+		search(mismatches, length, prefix);
+	}
+
+	// searches below a prefix that has already been scored
+	private void search(int[][][] mismatches, int length, int prefix) {
+		// a full k-mer was already checked against the bound when it was extended
+		if (length == k) return;
+
+		for (int base = 0; base < 4; base++)
+			if (extend(mismatches, length, base, (prefix << 2) | base))
+				search(mismatches, length + 1, (prefix << 2) | base);
+	}
+
+	// scores a prefix one base longer than the last one, offering it as the new best if it is complete
+	// returns whether anything under the new prefix could still beat the best so far
+	private boolean extend(int[][][] mismatches, int length, int base, int prefix) {
+		// the distance of the new prefix
+		int distance = 0;
+
+		for (int t = 0; t < dna.length; t++) {
+			int[] before = mismatches[length][t], after = mismatches[length + 1][t];
+			byte[] text = dna[t];
+			int min = Integer.MAX_VALUE;
+
+			for (int i = 0; i < after.length; i++) {
+				after[i] = before[i] + (text[i + length] != base ? 1 : 0);
+				if (after[i] < min) min = after[i];
+			}
+			distance += min;
+		}
+
+		// the best any k-mer under this prefix could do: this distance, with the first k-mer under it
+		long bound = pack(distance, prefix << (2 * (k - length - 1)));
+		if (bound > best.get()) return false;
+
+		// a complete k-mer that makes it here is the new best
+		if (length + 1 == k) best.accumulateAndGet(bound, Math::min);
+
+		return true;
+	}
+}
@@ -8,9 +8,6 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 
-// for getting preliminary motifs
-import motifs.random;
-
 // general PRECONDTION for all methods: strings only contain ACGT in various combinations
 // k-mer: string of length k
 class gibbs {
@@ -196,73 +193,27 @@ class gibbs {
 	}
 	
 	// tries to find an array of k-mers, from an array of strings, which are the most similar to each other
+	// starts from random motifs, and updates counts one motif at a time instead of rebuilding profiles
 	// PRECONDITION: dna's strings are the same length, which is >= k, k > 0, n > 0
-	// CALLS: bestRandomMotifs, createProfile, scoreMotifs, weightedRandom
-	// CALLS: motifsExcpet, motifProbs, weightedKmer
+	// CALLS: gibbsEngine
 	public static String[] gibbsSampler(String[] dna, int k, int n) {
-		// initialize return variable to some good motifs
-		String[] bestMotifs = random.bestRandomMotifs(dna, k, 20);
-		// save those motifs in another variable
-		String[] motifs = bestMotifs.clone();
-		
-		// initialize a probability matrix & lowest score to current motifs
-		float[][] profile = createProfile(motifs);
-		int minScore = scoreMotifs(motifs, profile);
-		// used to track situation in the loop
-		int score, index;
-		
-		// loop n times
-		for (int i = 1; i < n; i++) {
-			// get a random motif index
-			index = (int) (Math.random() * motifs.length);
-			// create a profile based on everything but that motif
-			profile = createProfile(motifsExcept(motifs, index));
-			
-			// choose a weighted random k-mer based on that profile from the left-out string
-			motifs[index] = weightedKmer(dna[index], profile);
-			// calculate the new score
-			score = scoreMotifs(motifs, createProfile(motifs));
-			
-			// if the new motifs are better than the current best ones
-			if (score < minScore) {
-				// update minimum score & best motifs
-				minScore = score;
-				bestMotifs = motifs.clone();
-			}
-		}
-		
-		return bestMotifs;
+		return gibbsEngine.gibbsSampler(dna, k, n, new SplittableRandom());
 	}
 	
 	// tries to find an array of k-mers, from an array of strings, which are the most similar to each other
+	// runs the t samplers on parallel threads
 	// PRECONDITION: dna's strings are the same length, which is >= k, k > 0, t > 0, n > 0
-	// CALLS: gibbsSampler, scoreMotifs, createProfile
+	// CALLS: bestGibbsMotifs
 	public static String[] bestGibbsMotifs(String[] dna, int k, int n, int t) {
-		// initialize return variable to some good motifs
-		String[] bestMotifs = gibbsSampler(dna, k, n);
-		// save current motifs
-		String[] motifs = bestMotifs.clone();
-		// the minimum recorded score is score of those motifs
-		int minScore = scoreMotifs(motifs, createProfile(motifs));
-		// keep track of current score in the loop
-		int score;
-		
-		// loop 1 - t times (already ran once)
-		for (int i = 1; i < t; i++) {
-			// get some new "good" motifs
-			motifs = gibbsSampler(dna, k, n);
-			// score these motifs
-			score = scoreMotifs(motifs, createProfile(motifs));
-			
-			// if the new motifs are better than the current best ones
-			if (score < minScore) {
-				// update minimum score & best motifs
-				minScore = score;
-				bestMotifs = motifs.clone();
-			}
-		}
-		
-		return bestMotifs;
+		return bestGibbsMotifs(dna, k, n, t, new SplittableRandom().nextLong());
+	}
+	
+	// tries to find an array of k-mers, from an array of strings, which are the most similar to each other
+	// runs the t samplers on parallel threads, always giving the same motifs for the same seed
+	// PRECONDITION: dna's strings are the same length, which is >= k, k > 0, t > 0, n > 0
+	// CALLS: gibbsEngine
+	public static String[] bestGibbsMotifs(String[] dna, int k, int n, int t, long seed) {
+		return gibbsEngine.bestGibbsMotifs(dna, k, n, t, seed);
 	}
 	
 	// reads a file in as a string, getting rid of line breaks
@@ -0,0 +1,214 @@
+package motifs;
+
+// for random numbers that can be split between threads
+import java.util.SplittableRandom;
+// for running restarts on many threads
+import java.util.stream.IntStream;
+
+// general PRECONDTION for all methods: strings only contain ACGT in various combinations
+// k-mer: string of length k
+// Gibbs sampling that never rebuilds a profile from scratch
+// motifs are kept as start indices into the strings, along with a count matrix of how often each
+// base appears at each index of the motifs; each iteration takes one motif's bases out of the counts,
+// turns the counts into a log-probability table, picks a new motif, and puts its bases back in
+// a k-mer's probability is a sum of k table lookups (a log-product), so nothing underflows
+// and the score (differences from the consensus) is read straight off the counts
+class gibbsEngine {
+	// the bases, indexed by their numbers
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+	// the strings, as arrays of base numbers
+	private final byte[][] dna;
+	// the length of motifs
+	private final int k;
+	// the start index of each current motif, and of the best motifs seen
+	private final int[] starts, bestStarts;
+	// counts[b][j] is how many current motifs have base b at index j
+	private final int[][] counts;
+	// the log-probability of each base at each index, for the profile being sampled from
+	private final double[][] logProfile;
+	// room for the weight of every k-mer in the longest string
+	private final double[] weights;
+	// the score of the best motifs seen
+	private int bestScore;
+
+	// sets up an engine for some already-converted strings
+	// PRECONDITION: every string is at least k long, k > 0
+	private gibbsEngine(byte[][] dna, int k) {
+		this.dna = dna;
+		this.k = k;
+		this.starts = new int[dna.length];
+		this.bestStarts = new int[dna.length];
+		this.counts = new int[4][k];
+		this.logProfile = new double[4][k];
+
+		int longest = 0;
+		for (byte[] text : dna) longest = Math.max(longest, text.length);
+		this.weights = new double[longest - k + 1];
+	}
+
+	// converts strings to arrays of base numbers
+	// PRECONDITION: every string is at least k long, k > 0
+	public static byte[][] encode(String[] dna, int k) {
+		// check for argument validity
+		if (dna == null || dna.length == 0)
+			throw new IllegalArgumentException("Can't look for motifs in no strings");
+		if (k <= 0)
+			throw new IllegalArgumentException("Can't look for " + k + "-long motifs");
+
+		// initialize return variable
+		byte[][] encoded = new byte[dna.length][];
+
+		for (int t = 0; t < dna.length; t++) {
+			if (dna[t].length() < k)
+				throw new IllegalArgumentException("A " + dna[t].length() + "-long string has no " + k + "-mers");
+
+			encoded[t] = new byte[dna[t].length()];
+			for (int i = 0; i < dna[t].length(); i++) {
+				int base = "ACGT".indexOf(dna[t].charAt(i));
+				if (base < 0)
+					throw new IllegalArgumentException("Requires ACGT DNA strings, not '" + dna[t].charAt(i) + "'");
+				encoded[t][i] = (byte) base;
+			}
+		}
+
+		return encoded;
+	}
+
+	// runs one Gibbs sampler, starting from random motifs, for n - 1 iterations
+	// PRECONDITION: dna's strings are at least k long, k > 0, n > 0
+	// CALLS: encode
+	public static String[] gibbsSampler(String[] dna, int k, int n, SplittableRandom random) {
+		gibbsEngine engine = new gibbsEngine(encode(dna, k), k);
+		engine.sample(n, random);
+
+		return engine.bestMotifs();
+	}
+
+	// runs t independent Gibbs samplers on parallel threads, and keeps the best motifs
+	// each sampler gets its own random number generator split off from one made from seed,
+	// so the same seed always gives the same motifs no matter how the threads are scheduled
+	// PRECONDITION: dna's strings are at least k long, k > 0, n > 0, t > 0
+	// CALLS: encode
+	public static String[] bestGibbsMotifs(String[] dna, int k, int n, int t, long seed) {
+		// check for argument validity
+		if (t <= 0)
+			throw new IllegalArgumentException("Can't run " + t + " samplers");
+
+		byte[][] encoded = encode(dna, k);
+
+		// split off one generator per sampler before any threads start
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[t];
+		for (int i = 0; i < t; i++) randoms[i] = root.split();
+
+		// run every sampler, keeping the best (ties go to the earliest sampler)
+		gibbsEngine best = IntStream.range(0, t).parallel().mapToObj(i -> {
+			gibbsEngine engine = new gibbsEngine(encoded, k);
+			engine.sample(n, randoms[i]);
+			return engine;
+		}).reduce((a, b) -> b.bestScore < a.bestScore ? b : a).get();
+
+		return best.bestMotifs();
+	}
+
+	// picks random motifs, then resamples one motif at a time n - 1 times
+	private void sample(int n, SplittableRandom random) {
+		// start from a random k-mer in every string
+		for (int t = 0; t < dna.length; t++) {
+			starts[t] = random.nextInt(dna[t].length - k + 1);
+			addMotif(t, 1);
+		}
+		bestScore = score();
+		System.arraycopy(starts, 0, bestStarts, 0, starts.length);
+
+		// loop n - 1 times
+		for (int i = 1; i < n; i++) {
+			// take a random motif out of the counts
+			int index = random.nextInt(dna.length);
+			addMotif(index, -1);
+
+			// choose a weighted random k-mer from the left-out string, then put it in
+			fillLogProfile();
+			starts[index] = weightedStart(dna[index], random);
+			addMotif(index, 1);
+
+			// if the new motifs are better than the best ones, save them
+			int score = score();
+			if (score < bestScore) {
+				bestScore = score;
+				System.arraycopy(starts, 0, bestStarts, 0, starts.length);
+			}
+		}
+	}
+
+	// adds (or takes away, for -1) one motif's bases to the counts
+	private void addMotif(int index, int amount) {
+		byte[] text = dna[index];
+		for (int j = 0, start = starts[index]; j < k; j++) counts[text[start + j]][j] += amount;
+	}
+
+	// turns the counts (with one motif taken out) into log-probabilities with pseudocounts of 1
+	private void fillLogProfile() {
+		double logTotal = Math.log(dna.length - 1 + 4);
+		for (int b = 0; b < 4; b++)
+			for (int j = 0; j < k; j++) logProfile[b][j] = Math.log(counts[b][j] + 1) - logTotal;
+	}
+
+	// picks a k-mer start from a string, weighted by each k-mer's probability under the profile
+	private int weightedStart(byte[] text, SplittableRandom random) {
+		int kmers = text.length - k + 1;
+		double max = Double.NEGATIVE_INFINITY;
+
+		// find every k-mer's log-probability
+		for (int i = 0; i < kmers; i++) {
+			double log = 0;
+			for (int j = 0; j < k; j++) log += logProfile[text[i + j]][j];
+			weights[i] = log;
+			if (log > max) max = log;
+		}
+
+		// scale so the most likely k-mer has weight 1, then sum the weights
+		double sum = 0;
+		for (int i = 0; i < kmers; i++) sum += weights[i] = Math.exp(weights[i] - max);
+
+		// walk along until the weights pass a random point
+		double rand = random.nextDouble() * sum;
+		for (int i = 0; i < kmers; i++) {
+			rand -= weights[i];
+			if (rand < 0) return i;
+		}
+
+		// just in case rounding kept that from working, return the last k-mer
+		return kmers - 1;
+	}
+
+	// scores the current motifs: the total differences from their consensus
+	private int score() {
+		// initialize return variable
+		int score = 0;
+
+		// at each index, every motif without the most common base is one difference
+		for (int j = 0; j < k; j++) {
+			int max = 0;
+			for (int b = 0; b < 4; b++) max = Math.max(max, counts[b][j]);
+			score += dna.length - max;
+		}
+
+		return score;
+	}
+
+	// converts the best start indices back to motif strings
+	private String[] bestMotifs() {
+		// initialize return variable
+		String[] motifs = new String[dna.length];
+
+		for (int t = 0; t < dna.length; t++) {
+			char[] motif = new char[k];
+			for (int j = 0; j < k; j++) motif[j] = BASES[dna[t][bestStarts[t] + j]];
+			motifs[t] = new String(motif);
+		}
+
+		return motifs;
+	}
+}
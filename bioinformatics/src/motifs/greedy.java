@@ -130,72 +130,54 @@ class greedy {
 	
 	// finds the k-mer in a string that is the most probable given a probability matrix for each position and base
 	// PRECONDITION: genome is not empty, genome's length >= profile[]'s lengths
-	// CALLS: score
+	// CALLS: profileScanner
 	public static String profProbKmer(String genome, float[][] profile) {
-		// calculate how long the k-mer should be
-		int k = profile[0].length;
-		// initialize return variable to first k-mer
-		String mostProb = genome.substring(0, k);
-		// maximum probability so far is nothing
-		double maxProb = 0;
-		// used to track the situation inside the loop
-		double prob = 0;
-		
-		// loop through every k-mer in the string
-		for (int i = 0, n = genome.length() - k; i <= n; i++) {
-			// calculate the probability of this k-mer
-			prob = score(genome.substring(i, i + k), profile);
-			
-			// if the probability exceeds the maximum probability so far
-			if (prob > maxProb) {
-				// set maximum probability to this probability, and most likely k-mer to this k-mer
-				maxProb = prob;
-				mostProb = genome.substring(i, i + k);
-			}
-		}
-		return mostProb;
+		return new profileScanner(profile).mostProbable(genome);
 	}
 	
 	// tries to find an array of k-mers, from an array of strings, whcih are the most similar to each other
+	// strings are encoded once, and each profile is a count matrix that grows one motif at a time
 	// PRECONDTION: all strings in dna are longer than k, k > 0
-	// CALLS: createProfile, profProbKmer
+	// CALLS: profileScanner
 	public static String[] greedyMotifSearch(String[] dna, int k) {
 		// initialize return variable
 		String[] bestMotifs = new String[dna.length];
-		// used to hold current motifs, must grow and shrink
-		ArrayList<String> motifs = new ArrayList<String>();
 		// minimum score set to maximum (every character of every string is different)
 		int minScore = k * dna.length;
+		
+		// encode every string once
+		byte[][] encoded = new byte[dna.length][];
+		for (int j = 0; j < dna.length; j++) encoded[j] = profileScanner.encode(dna[j]);
+		
 		// used to track values in the loop
-		float[][] profile = new float[4][dna[0].length()];
-		int score;
+		int[] starts = new int[dna.length];
+		int[][] counts = new int[4][k];
 		
 		// loop over every k-mer in the first string
 		for (int i = 0, n = dna[0].length() - k; i <= n; i++) {
 			// set motifs to just the k-mer
-			motifs.clear();
-			motifs.add(dna[0].substring(i, i + k));
+			for (int[] row : counts) Arrays.fill(row, 0);
+			starts[0] = i;
+			for (int c = 0; c < k; c++) counts[encoded[0][i + c]][c]++;
 			
 			// loop over all other strings
 			for (int j = 1, m = dna.length; j < m; j++) {
-				// create a profile for the current k-mers
-				profile = createProfile(motifs);
-				
-				// add the best k-mer from the current string to motifs
-				motifs.add(profProbKmer(dna[j], profile));
+				// add the best k-mer from the current string, given the current motifs, to motifs
+				starts[j] = new profileScanner(counts, j).mostProbable(encoded[j]);
+				for (int c = 0; c < k; c++) counts[encoded[j][starts[j] + c]][c]++;
 			}
 			
-			// score the set of k-mers found
-			score = score(motifs, profile);
+			// score the set of k-mers found: at each index, every motif without the most common base
+			int score = 0;
+			for (int c = 0; c < k; c++)
+				score += dna.length - Math.max(Math.max(counts[0][c], counts[1][c]), Math.max(counts[2][c], counts[3][c]));
 			
 			// if this score is less than the minimum score so far
 			if (score < minScore) {
 				// set minimum score to this score
 				minScore = score;
 				// set the best-scoring motifs to these motifs
-				for (int j = 0, m = motifs.size(); j < m; j++) {
-					bestMotifs[j] = motifs.get(j);
-				}
+				for (int j = 0, m = dna.length; j < m; j++) bestMotifs[j] = dna[j].substring(starts[j], starts[j] + k);
 			}
 		}
 		
@@ -0,0 +1,89 @@
+package motifs;
+
+// for clearing the running totals
+import java.util.Arrays;
+
+// general PRECONDTION for all methods: strings only contain ACGT in various combinations
+// k-mer: string of length k
+// finds the most probable k-mer in a string given a profile, shared by greedy and random
+// the profile is turned into a table of log-probabilities once, so a k-mer's probability is a sum
+// of k lookups instead of a product of floats over a substring; the string is scanned as a byte
+// array one profile column at a time, adding that column's log-probability to every window's total,
+// which keeps the inner loop a simple walk over two arrays that the JIT can unroll
+class profileScanner {
+	// the length of k-mers being scanned for
+	private final int k;
+	// table[j][b] is the log-probability of base b at index j
+	private final double[][] table;
+	// running totals for every window, reused between scans
+	private double[] totals = new double[0];
+
+	// sets up a scanner from a probability matrix
+	// PRECONDITION: profile's length = 4, profile[]'s are of equal length > 0
+	public profileScanner(float[][] profile) {
+		this.k = profile[0].length;
+		this.table = new double[k][4];
+
+		for (int j = 0; j < k; j++)
+			for (int b = 0; b < 4; b++) table[j][b] = Math.log(profile[b][j]);
+	}
+
+	// sets up a scanner from a count matrix of some motifs, with pseudocounts of 1
+	// PRECONDITION: counts's length = 4, counts[]'s are of equal length > 0, motifs >= 0
+	public profileScanner(int[][] counts, int motifs) {
+		this.k = counts[0].length;
+		this.table = new double[k][4];
+
+		double logTotal = Math.log(motifs + 4);
+		for (int j = 0; j < k; j++)
+			for (int b = 0; b < 4; b++) table[j][b] = Math.log(counts[b][j] + 1) - logTotal;
+	}
+
+	// converts a DNA string to an array of base numbers, A=0, C=1, G=2, T=3
+	// PRECONDITION: genome only contains ACGT
+	public static byte[] encode(String genome) {
+		// initialize return variable
+		byte[] encoded = new byte[genome.length()];
+
+		for (int i = 0; i < encoded.length; i++) {
+			switch (genome.charAt(i)) {
+			case 'A': encoded[i] = 0; break;
+			case 'C': encoded[i] = 1; break;
+			case 'G': encoded[i] = 2; break;
+			case 'T': encoded[i] = 3; break;
+			default:
+				throw new IllegalArgumentException("Requires ACGT DNA strings, not '" + genome.charAt(i) + "'");
+			}
+		}
+
+		return encoded;
+	}
+
+	// finds the start of the most probable k-mer in an encoded string (the first, if there's a tie)
+	// PRECONDITION: text's length >= k
+	public int mostProbable(byte[] text) {
+		int windows = text.length - k + 1;
+		if (totals.length < windows) totals = new double[windows];
+		Arrays.fill(totals, 0, windows, 0);
+
+		// add one column at a time to every window's total
+		for (int j = 0; j < k; j++) {
+			double[] column = table[j];
+			for (int i = 0; i < windows; i++) totals[i] += column[text[i + j]];
+		}
+
+		// find the first highest total
+		int best = 0;
+		for (int i = 1; i < windows; i++) if (totals[i] > totals[best]) best = i;
+
+		return best;
+	}
+
+	// finds the most probable k-mer in a string (the first, if there's a tie)
+	// PRECONDITION: genome's length >= k
+	// CALLS: encode, mostProbable
+	public String mostProbable(String genome) {
+		int start = mostProbable(encode(genome));
+		return genome.substring(start, start + k);
+	}
+}
@@ -149,43 +149,25 @@ class random {
 	
 	// finds the k-mer in a string that is the most probable given a probability matrix for each position and base
 	// PRECONDITION: genome is not empty, genome's length >= profile[]'s lengths
-	// CALLS: scoreMotif
+	// CALLS: profileScanner
 	public static String profProbKmer(String genome, float[][] profile) {
-		// calculate how long the k-mer should be
-		int k = profile[0].length;
-		// initialize return variable to first k-mer
-		String mostProb = genome.substring(0, k);
-		// maximum probability so far is nothing
-		double maxProb = 0;
-		// used to track the situation inside the loop
-		double prob = 0;
-		
-		// loop through every k-mer in the string
-		for (int i = 0, n = genome.length() - k; i <= n; i++) {
-			// calculate the probability of this k-mer
-			prob = scoreMotif(genome.substring(i, i + k), profile);
-			
-			// if the probability exceeds the maximum probability so far
-			if (prob > maxProb) {
-				// set maximum probability to this probability, and most likely k-mer to this k-mer
-				maxProb = prob;
-				mostProb = genome.substring(i, i + k);
-			}
-		}
-		return mostProb;
+		return new profileScanner(profile).mostProbable(genome);
 	}
 		
 	// generate the best-scoring k-mers, one from each string in a list, given a probability matrix
 	// PRECONDITION: dna's strings are the same length, which equals profile[]'s, profile's length = 4
-	// CALLS: profProbKmer
+	// CALLS: profileScanner
 	public static String[] bestMotifs(String[] dna, float[][] profile) {
 		// initialize return variable
 		String[] bestMotifs = new String[dna.length];
 		
+		// build the log-probability table once for every string
+		profileScanner scanner = new profileScanner(profile);
+		
 		// for each string in the list
 		for (int i = 0, n = bestMotifs.length; i < n; i++) {
 			// add the most likely k-mer to the list of good motifs
-			bestMotifs[i] = profProbKmer(dna[i], profile);
+			bestMotifs[i] = scanner.mostProbable(dna[i]);
 		}
 		
 		return bestMotifs;
@@ -227,34 +209,19 @@ class random {
 	}
 	
 	// tries to find an array of k-mers, from an array of strings, which are the most similar to each other
+	// runs the t searches on parallel threads
 	// PRECONDITION: dna's strings are the same length, which is >= k, k > 0, times > 0;
-	// CALLS: randomizedMotifSearch, scoreMotifs, createProfile
+	// CALLS: randomEngine
 	public static String[] bestRandomMotifs(String[] dna, int k, int t) {
-		// initialize return variable to some good motifs
-		String[] bestMotifs = randomizedMotifSearch(dna, k);
-		// set current collection of motifs
-		String[] motifs = bestMotifs.clone();
-		// the minimum recorded score is score of those motifs
-		int minScore = scoreMotifs(motifs, createProfile(motifs));
-		// keep track of current score in the loop
-		int score;
-		
-		// loop 1 - t times (already ran once)
-		for (int i = 1; i < t; i++) {
-			// get some new "good" motifs
-			motifs = randomizedMotifSearch(dna, k);
-			// score these motifs
-			score = scoreMotifs(motifs, createProfile(motifs));
-			
-			// if the new motifs are better than the current best ones
-			if (score < minScore) {
-				// update minimum score & best motifs
-				minScore = score;
-				bestMotifs = motifs.clone();
-			}
-		}
-		
-		return bestMotifs;
+		return randomEngine.run(dna, k, t, new SplittableRandom().nextLong()).getBestMotifs();
+	}
+	
+	// tries to find an array of k-mers, from an array of strings, which are the most similar to each other
+	// runs the t searches on parallel threads, always giving the same motifs for the same seed
+	// PRECONDITION: dna's strings are the same length, which is >= k, k > 0, times > 0;
+	// CALLS: randomEngine
+	public static String[] bestRandomMotifs(String[] dna, int k, int t, long seed) {
+		return randomEngine.run(dna, k, t, seed).getBestMotifs();
 	}
 	
 	// reads a file in as a string, getting rid of line breaks
@@ -0,0 +1,236 @@
+package motifs;
+
+// for random numbers that can be split between threads
+import java.util.SplittableRandom;
+// for sorting timings
+import java.util.Arrays;
+// for running restarts on many threads
+import java.util.stream.IntStream;
+
+// general PRECONDTION for all methods: strings only contain ACGT in various combinations
+// k-mer: string of length k
+// runs many randomized motif searches on parallel threads, and keeps statistics on them
+// each restart keeps its motifs as start indices and its profile as a count matrix, so nothing
+// is reallocated between iterations; every restart gets its own random number generator split
+// off from one seed before any threads start, so a seed always gives the same results
+// after running, tells how long each restart took, how many iterations it needed to converge,
+// and how many restarts it took to first reach the best score
+class randomEngine {
+	// the bases, indexed by their numbers
+	private static final char[] BASES = {'A', 'C', 'G', 'T'};
+
+	// the strings, as arrays of base numbers
+	private final byte[][] dna;
+	// the length of motifs
+	private final int k;
+	// for each restart: its score, how many iterations it ran, and how long it took
+	private final int[] scores, iterations;
+	private final long[] nanos;
+	// the best (score, restart) so far, and the starts of that restart's motifs
+	private long bestKey = Long.MAX_VALUE;
+	private int[] bestStarts;
+
+	// sets up a run of some number of restarts
+	private randomEngine(byte[][] dna, int k, int restarts) {
+		this.dna = dna;
+		this.k = k;
+		this.scores = new int[restarts];
+		this.iterations = new int[restarts];
+		this.nanos = new long[restarts];
+	}
+
+	// runs t randomized motif searches on parallel threads
+	// PRECONDITION: dna's strings are at least k long, k > 0, t > 0
+	// CALLS: gibbsEngine.encode
+	public static randomEngine run(String[] dna, int k, int t, long seed) {
+		// check for argument validity
+		if (t <= 0)
+			throw new IllegalArgumentException("Can't run " + t + " restarts");
+
+		randomEngine engine = new randomEngine(gibbsEngine.encode(dna, k), k, t);
+
+		// split off one generator per restart before any threads start
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[t];
+		for (int i = 0; i < t; i++) randoms[i] = root.split();
+
+		IntStream.range(0, t).parallel().forEach(i -> engine.restart(i, randoms[i]));
+
+		return engine;
+	}
+
+	// runs one randomized motif search, from random motifs until the score stops improving
+	private void restart(int index, SplittableRandom random) {
+		long start = System.nanoTime();
+
+		// motif start indices, and the starts picked by the profile of those motifs
+		int[] starts = new int[dna.length], next = new int[dna.length];
+		int[][] counts = new int[4][k];
+		double[][] logProfile = new double[4][k];
+
+		// start from a random k-mer in every string
+		for (int t = 0; t < dna.length; t++) starts[t] = random.nextInt(dna[t].length - k + 1);
+		fillCounts(starts, counts);
+		int score = score(counts);
+		int rounds = 0;
+
+		// loop for as many times as necessary
+		while (true) {
+			rounds++;
+
+			// turn the counts into log-probabilities, with pseudocounts of 1
+			double logTotal = Math.log(dna.length + 4);
+			for (int b = 0; b < 4; b++)
+				for (int j = 0; j < k; j++) logProfile[b][j] = Math.log(counts[b][j] + 1) - logTotal;
+
+			// pick the most probable k-mer from every string (the first, if there's a tie)
+			for (int t = 0; t < dna.length; t++) next[t] = mostProbable(dna[t], logProfile);
+			fillCounts(next, counts);
+			int nextScore = score(counts);
+
+			// if the score stops improving, the current motifs are a local minimum
+			if (nextScore >= score) break;
+
+			score = nextScore;
+			int[] swap = starts;
+			starts = next;
+			next = swap;
+		}
+
+		scores[index] = score;
+		iterations[index] = rounds;
+		nanos[index] = System.nanoTime() - start;
+		offer(score, index, starts);
+	}
+
+	// saves a restart's motifs if they are the best so far (ties go to the earliest restart)
+	private synchronized void offer(int score, int index, int[] starts) {
+		long key = ((long) score << 32) | index;
+		if (key < bestKey) {
+			bestKey = key;
+			bestStarts = starts;
+		}
+	}
+
+	// counts how often each base appears at each index of some motifs
+	private void fillCounts(int[] starts, int[][] counts) {
+		for (int[] row : counts) Arrays.fill(row, 0);
+		for (int t = 0; t < dna.length; t++)
+			for (int j = 0; j < k; j++) counts[dna[t][starts[t] + j]][j]++;
+	}
+
+	// scores motifs from their counts: the total differences from their consensus
+	private int score(int[][] counts) {
+		// initialize return variable
+		int score = 0;
+
+		// at each index, every motif without the most common base is one difference
+		for (int j = 0; j < k; j++) {
+			int max = 0;
+			for (int b = 0; b < 4; b++) max = Math.max(max, counts[b][j]);
+			score += dna.length - max;
+		}
+
+		return score;
+	}
+
+	// finds the start of the first most probable k-mer in a string
+	private int mostProbable(byte[] text, double[][] logProfile) {
+		int best = 0;
+		double max = Double.NEGATIVE_INFINITY;
+
+		for (int i = 0; i <= text.length - k; i++) {
+			double log = 0;
+			for (int j = 0; j < k; j++) log += logProfile[text[i + j]][j];
+			if (log > max) {
+				max = log;
+				best = i;
+			}
+		}
+
+		return best;
+	}
+
+	// converts the best restart's start indices back to motif strings
+	public String[] getBestMotifs() {
+		// initialize return variable
+		String[] motifs = new String[dna.length];
+
+		for (int t = 0; t < dna.length; t++) {
+			char[] motif = new char[k];
+			for (int j = 0; j < k; j++) motif[j] = BASES[dna[t][bestStarts[t] + j]];
+			motifs[t] = new String(motif);
+		}
+
+		return motifs;
+	}
+
+	// getter for the best score
+	public int getBestScore() {
+		return (int) (bestKey >>> 32);
+	}
+
+	// getter for every restart's score, in restart order
+	public int[] getScores() {
+		return scores.clone();
+	}
+
+	// getter for how many iterations every restart took to converge, in restart order
+	public int[] getIterations() {
+		return iterations.clone();
+	}
+
+	// getter for how many nanoseconds every restart took, in restart order
+	public long[] getNanos() {
+		return nanos.clone();
+	}
+
+	// counts how many restarts took each number of iterations to converge
+	// the [i]th element is the number of restarts that took i iterations
+	public int[] iterationHistogram() {
+		int most = 0;
+		for (int rounds : iterations) most = Math.max(most, rounds);
+
+		// initialize return variable
+		int[] histogram = new int[most + 1];
+		for (int rounds : iterations) histogram[rounds]++;
+
+		return histogram;
+	}
+
+	// finds how many restarts (in restart order) it took to first reach the best score
+	public int restartsToBest() {
+		int best = getBestScore();
+		for (int i = 0; i < scores.length; i++) if (scores[i] == best) return i + 1;
+
+		return scores.length;
+	}
+
+	// finds how many restarts reached the best score
+	public int restartsAtBest() {
+		int best = getBestScore();
+		int count = 0;
+		for (int score : scores) if (score == best) count++;
+
+		return count;
+	}
+
+	// summarizes the run: scores, timing percentiles, and the iteration histogram
+	@Override
+	public String toString() {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+
+		String summary = scores.length + " restarts, best score " + getBestScore() + " (first reached after "
+				+ restartsToBest() + " restarts, reached by " + restartsAtBest() + ")\n";
+		summary += "ms per restart: p50 " + sorted[sorted.length / 2] / 1e6 + ", p99 "
+				+ sorted[Math.min(sorted.length - 1, (int) (sorted.length * 0.99))] / 1e6 + ", max "
+				+ sorted[sorted.length - 1] / 1e6 + "\n";
+		summary += "iterations to converge:";
+
+		int[] histogram = iterationHistogram();
+		for (int i = 0; i < histogram.length; i++) if (histogram[i] > 0) summary += " " + i + "x" + histogram[i];
+
+		return summary;
+	}
+}
@@ -4,6 +4,8 @@ import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashSet;
 
+import sequences.PackedDNA;
+
 /**
  * Has all kinds of methods for pattern matching with Burrow-Wheeler transforms
  * <br>
@@ -22,6 +24,7 @@ import java.util.HashSet;
  *  <li>find the starting indices of a pattern (or patterns) in a string using
  *  	its BW transform with some mismatches allowed</li>
  *  <li>determine which reads are close enough to some point in a genome</h1>
+ *  <li>do any of the above searches on a packed genome</li>
  * </ul>
  * Definitions/abbreviations:
  * <ul>
@@ -131,6 +134,19 @@ public class SuffixArray {
 		}
 	}
 	
+	/**
+	 * Unpacks a genome into the form the BW methods work on.
+	 * @param genome a packed genome
+	 * @return the genome as a string, ending in @
+	 */
+	private static String unpack(PackedDNA genome) {
+		// check for argument validity
+		if (genome == null)
+			throw new IllegalArgumentException("Can't unpack a null genome");
+		
+		return genome.toString() + DNA[0];
+	}
+	
 	/**
 	 * Converts a string to a suffix array.
 	 * @param str the string to convert
@@ -688,4 +704,37 @@ public class SuffixArray {
 		
 		return close;
 	}
+	
+	/**
+	 * Counts the number of matches for some patterns in a packed genome.
+	 * @param genome a packed genome
+	 * @param patterns the patterns to look for
+	 * @return the number of times each pattern appear in a parallel array
+	 */
+	public static int[] countMatches(PackedDNA genome, String[] patterns) {
+		return countMatches(unpack(genome), patterns);
+	}
+	
+	/**
+	 * Finds all starting indices of some patterns in a packed genome with mismatches
+	 * NOTE: indices may be repeated if multiple patterns start at the same index
+	 * @param genome a packed genome
+	 * @param patterns the patterns to search for
+	 * @param d the maximum number of mismatches to allow
+	 * @return all (sorted) starting indices of the patterns in the genome
+	 */
+	public static ArrayList<Integer> findStarts(PackedDNA genome, String[] patterns, int d) {
+		return findStarts(unpack(genome), patterns, d);
+	}
+	
+	/**
+	 * Determine which reads are close-enough to a packed genome
+	 * @param genome the packed genome to compare to
+	 * @param reads the reads to compare
+	 * @param d the maximum number of mismatches to allow
+	 * @return all reads which are close enough to some spot in the genome
+	 */
+	public static ArrayList<String> closeReads(PackedDNA genome, String[] reads, int d) {
+		return closeReads(unpack(genome), reads, d);
+	}
 }
\ No newline at end of file
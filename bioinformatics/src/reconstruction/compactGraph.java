@@ -0,0 +1,419 @@
+package reconstruction;
+
+// for writing genomes to files
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+// for lists of paths
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// for packing (k-1)-mers into longs
+import sequences.PackedDNA;
+
+/**
+ * <h1>Compact DeBrujin Graph</h1>
+ * A DeBrujin graph with integer node IDs, for assembling from far more k-mers than a
+ * <code>Map&lt;String, ArrayList&lt;String&gt;&gt;</code> can hold. Each node is a packed (k-1)-mer
+ * looked up through a <code>nodeIndex</code>, and the edges are stored compressed-sparse-row style:
+ * the edges out of node v are <code>targets[offsets[v]]</code> to <code>targets[offsets[v + 1] - 1]</code>,
+ * in the same order as the k-mers they came from.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>k-mer</strong>: string of length k (AATA has 3-mers AAT and ATA)</li>
+ * 		<li><strong>prefix</strong>: a string, excluding the last char</li>
+ * 		<li><strong>suffix</strong>: a string, excluding the first char</li>
+ * 		<li><strong>packed k-mer</strong>: a k-mer stored two bits per base in a long, as
+ * 			<code>sequences.PackedDNA.encode</code> gives</li>
+ * 		<li><strong>path</strong>: an array of node IDs in order that represents a longer string</li>
+ * 		<li><strong>in-and-out node</strong>: a node that has one incoming and one outgoing edge</li>
+ * 		<li><strong>maximal non-branching path</strong>: a path with maximum length where
+ * 			only the ending nodes are allowed to be non-in-and-out</li>
+ * </ul>
+ * @author faith
+ */
+public class compactGraph {
+	/**
+	 * the number of bases in each node
+	 */
+	private final int nodeLength;
+	/**
+	 * the IDs of the packed nodes
+	 */
+	private final nodeIndex index;
+	/**
+	 * where each node's edges start in targets (with one extra entry for the end)
+	 */
+	private final int[] offsets;
+	/**
+	 * the node at the end of each edge, grouped by the node at the start
+	 */
+	private final int[] targets;
+	/**
+	 * how many edges come into each node
+	 */
+	private final int[] inDegree;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Counts each node's outgoing edges, turns those counts into offsets, and then drops each
+	 * edge into its start node's block, which keeps the edges out of a node in input order.
+	 * <br>
+	 * precondition: from and to hold at least edges IDs from index
+	 * @param index the IDs of the nodes
+	 * @param nodeLength the number of bases in each node
+	 * @param from the start node of each edge
+	 * @param to the end node of each edge
+	 * @param edges the number of edges
+	 */
+	compactGraph(nodeIndex index, int nodeLength, int[] from, int[] to, int edges) {
+		this.index = index;
+		this.nodeLength = nodeLength;
+
+		int nodes = index.size();
+		offsets = new int[nodes + 1];
+		targets = new int[edges];
+		inDegree = new int[nodes];
+
+		// count the edges into and out of each node
+		for (int e = 0; e < edges; e++) {
+			offsets[from[e] + 1]++;
+			inDegree[to[e]]++;
+		}
+		// the running total of outgoing edges is where each node's block starts
+		for (int v = 0; v < nodes; v++) offsets[v + 1] += offsets[v];
+
+		// drop each edge into the next free spot in its block
+		int[] next = Arrays.copyOf(offsets, nodes);
+		for (int e = 0; e < edges; e++) targets[next[from[e]]++] = to[e];
+	}
+
+	/**
+	 * <h1>Constructor for edges that are already laid out</h1>
+	 * Only has to count the edges coming into each node.
+	 * <br>
+	 * precondition: offsets has one more entry than index has keys, targets holds IDs from index
+	 * @param index the IDs of the nodes
+	 * @param nodeLength the number of bases in each node
+	 * @param offsets where each node's edges start in targets
+	 * @param targets the node at the end of each edge, grouped by the node at the start
+	 */
+	compactGraph(nodeIndex index, int nodeLength, int[] offsets, int[] targets) {
+		this.index = index;
+		this.nodeLength = nodeLength;
+		this.offsets = offsets;
+		this.targets = targets;
+
+		inDegree = new int[index.size()];
+		for (int target : targets) inDegree[target]++;
+	}
+
+	/**
+	 * <h1>Creates a DeBrujin graph given k-mers</h1>
+	 * Packs each k-mer's prefix and suffix as it goes, so no substrings are made,
+	 * then gives each (k-1)-mer an ID in order of first appearance.
+	 * <br>
+	 * precondition: all strings in kmers are the same length, 1 < length <= 33, and only contain ACGT
+	 * @param kmers an array of k-mers
+	 * @return a DeBrujin graph
+	 */
+	public static compactGraph fromKmers(String[] kmers) {
+		// check for argument validity
+		if (kmers.length == 0)
+			throw new IllegalArgumentException("Can't build a graph out of no k-mers");
+		int k = kmers[0].length();
+		if (k < 2 || k - 1 > PackedDNA.MAX_K)
+			throw new IllegalArgumentException("Can't pack the nodes of " + k + "-mers into longs");
+
+		// masks off everything but the last k - 1 bases
+		long mask = k - 1 == PackedDNA.MAX_K ? -1L : (1L << (2 * (k - 1))) - 1;
+		nodeIndex index = new nodeIndex(kmers.length);
+		int[] from = new int[kmers.length];
+		int[] to = new int[kmers.length];
+
+		for (int e = 0; e < kmers.length; e++) {
+			String kmer = kmers[e];
+			if (kmer.length() != k)
+				throw new IllegalArgumentException("Can't mix " + k + "-mers and " + kmer.length() + "-mers");
+
+			// pack the prefix, then shift the last base in to get the suffix
+			long prefix = 0;
+			for (int i = 0; i < k - 1; i++) prefix = (prefix << 2) | PackedDNA.encode(kmer.charAt(i));
+			long suffix = ((prefix << 2) | PackedDNA.encode(kmer.charAt(k - 1))) & mask;
+
+			from[e] = index.add(prefix);
+			to[e] = index.add(suffix);
+		}
+
+		return new compactGraph(index, k - 1, from, to, kmers.length);
+	}
+
+	/**
+	 * <h1>Creates a DeBrujin graph given packed k-mers</h1>
+	 * Splits each packed k-mer into its prefix and suffix with a shift and a mask.
+	 * <br>
+	 * precondition: 1 < k <= 32, count <= kmers's length
+	 * @param kmers an array of packed k-mers
+	 * @param count how many of kmers to use
+	 * @param k the length of the k-mers
+	 * @return a DeBrujin graph
+	 */
+	public static compactGraph fromPackedKmers(long[] kmers, int count, int k) {
+		// check for argument validity
+		if (k < 2 || k > PackedDNA.MAX_K)
+			throw new IllegalArgumentException("Can't unpack " + k + "-mers from longs");
+
+		// masks off everything but the last k - 1 bases
+		long mask = (1L << (2 * (k - 1))) - 1;
+		nodeIndex index = new nodeIndex(count);
+		int[] from = new int[count];
+		int[] to = new int[count];
+
+		for (int e = 0; e < count; e++) {
+			from[e] = index.add(kmers[e] >>> 2);
+			to[e] = index.add(kmers[e] & mask);
+		}
+
+		return new compactGraph(index, k - 1, from, to, count);
+	}
+
+	/**
+	 * <h1>Getter for the number of nodes</h1>
+	 * @return the number of nodes
+	 */
+	public int nodeCount() {
+		return inDegree.length;
+	}
+
+	/**
+	 * <h1>Getter for the number of edges</h1>
+	 * @return the number of edges
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * <h1>Getter for the number of bases in each node</h1>
+	 * @return k - 1
+	 */
+	public int nodeLength() {
+		return nodeLength;
+	}
+
+	/**
+	 * <h1>Getter for a node's packed (k-1)-mer</h1>
+	 * precondition: 0 <= node < nodeCount
+	 * @param node a node ID
+	 * @return the packed (k-1)-mer
+	 */
+	public long node(int node) {
+		return index.key(node);
+	}
+
+	/**
+	 * <h1>Getter for a node's (k-1)-mer</h1>
+	 * precondition: 0 <= node < nodeCount
+	 * @param node a node ID
+	 * @return the (k-1)-mer
+	 */
+	public String nodeString(int node) {
+		return PackedDNA.decode(index.key(node), nodeLength);
+	}
+
+	/**
+	 * <h1>Finds the ID of a (k-1)-mer</h1>
+	 * @param packed a packed (k-1)-mer
+	 * @return its node ID, or -1 if it isn't a node
+	 */
+	public int id(long packed) {
+		return index.get(packed);
+	}
+
+	/**
+	 * <h1>Getter for how many edges go out of a node</h1>
+	 * precondition: 0 <= node < nodeCount
+	 * @param node a node ID
+	 * @return the node's outdegree
+	 */
+	public int outDegree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * <h1>Getter for how many edges come into a node</h1>
+	 * precondition: 0 <= node < nodeCount
+	 * @param node a node ID
+	 * @return the node's indegree
+	 */
+	public int inDegree(int node) {
+		return inDegree[node];
+	}
+
+	/**
+	 * <h1>Getter for the end of one of a node's edges</h1>
+	 * precondition: 0 <= node < nodeCount, 0 <= edge < outDegree(node)
+	 * @param node a node ID
+	 * @param edge which of the node's edges, in input order
+	 * @return the ID of the node at the end of the edge
+	 */
+	public int target(int node, int edge) {
+		return targets[offsets[node] + edge];
+	}
+
+	/**
+	 * <h1>Getter for where a node's edges start in the edge arrays</h1>
+	 * The edges out of node v are numbered <code>edgeStart(v)</code> to <code>edgeStart(v + 1) - 1</code>.
+	 * <br>
+	 * precondition: 0 <= node <= nodeCount
+	 * @param node a node ID
+	 * @return the number of the node's first edge
+	 */
+	int edgeStart(int node) {
+		return offsets[node];
+	}
+
+	/**
+	 * <h1>Getter for the end of an edge</h1>
+	 * precondition: 0 <= edge < edgeCount
+	 * @param edge an edge number
+	 * @return the ID of the node at the end of the edge
+	 */
+	int edgeTarget(int edge) {
+		return targets[edge];
+	}
+
+	/**
+	 * <h1>Finds an eulerian path through the graph</h1>
+	 * Starts at the node with one more outgoing than incoming edge (or, if the graph is a cycle,
+	 * the first node with any edges) and walks the edge arrays in place.
+	 * <br>
+	 * precondition: the graph has an eulerian path
+	 * <br>
+	 * calls: hierholzer.start, hierholzer.walk
+	 * @return the node IDs of the path, in order
+	 */
+	public int[] eulerPath() {
+		hierholzer engine = new hierholzer(offsets, targets);
+		int start = engine.start();
+		if (start < 0)
+			throw new IllegalArgumentException("Can't walk a graph with no edges");
+
+		return engine.walk(start);
+	}
+
+	/**
+	 * <h1>Writes the genome an eulerian path spells to a file</h1>
+	 * Each node's base is written as soon as the path reaches it, so the path
+	 * (and the genome) are never held in memory all at once.
+	 * <br>
+	 * precondition: the graph has an eulerian path
+	 * <br>
+	 * calls: hierholzer.writeSpelled
+	 * @param filename the path/name of the file to write to
+	 * @return the length of the genome
+	 * @throws IOException if filename is not valid
+	 */
+	public long writeGenome(String filename) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+			long length = new hierholzer(offsets, targets).writeSpelled(writer, this::nodeString);
+			writer.write("\n");
+			return length;
+		}
+	}
+
+	/**
+	 * <h1>Finds all maximal non-branching paths</h1>
+	 * First extends a path down each edge out of every node that isn't in-and-out, until it hits
+	 * a node that isn't in-and-out. Every in-and-out node that none of those reached must be on an
+	 * isolated cycle, so each one left over is walked around until it comes back to itself.
+	 * @return an <code>ArrayList</code> of paths, with cycles ending on their first node
+	 */
+	public ArrayList<int[]> maxNonBranch() {
+		// initialize return variable
+		ArrayList<int[]> paths = new ArrayList<int[]>();
+		int nodes = nodeCount();
+		// marks in-and-out nodes that are already in a path
+		boolean[] used = new boolean[nodes];
+		// holds the path being built
+		int[] path = new int[16];
+		int length;
+
+		// loop over all nodes that aren't in-and-out
+		for (int v = 0; v < nodes; v++) {
+			if (isInAndOut(v)) continue;
+
+			// start a path down each outgoing edge
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				path[0] = v;
+				length = 1;
+
+				// extend through in-and-out nodes, then add the node that ends the path
+				int next = targets[e];
+				while (isInAndOut(next)) {
+					used[next] = true;
+					if (length == path.length) path = Arrays.copyOf(path, length * 2);
+					path[length++] = next;
+					next = targets[offsets[next]];
+				}
+				if (length == path.length) path = Arrays.copyOf(path, length * 2);
+				path[length++] = next;
+
+				paths.add(Arrays.copyOf(path, length));
+			}
+		}
+
+		// whatever in-and-out nodes are left are in isolated cycles
+		for (int v = 0; v < nodes; v++) {
+			if (used[v] || !isInAndOut(v)) continue;
+
+			// walk around the cycle until it comes back to v
+			length = 0;
+			int next = v;
+			do {
+				used[next] = true;
+				if (length == path.length) path = Arrays.copyOf(path, length * 2);
+				path[length++] = next;
+				next = targets[offsets[next]];
+			} while (next != v);
+
+			// close the loop
+			if (length == path.length) path = Arrays.copyOf(path, length * 2);
+			path[length++] = v;
+
+			paths.add(Arrays.copyOf(path, length));
+		}
+
+		return paths;
+	}
+
+	/**
+	 * <h1>Checks if a node is in-and-out</h1>
+	 * @param node a node ID
+	 * @return whether the node has exactly one incoming and one outgoing edge
+	 */
+	private boolean isInAndOut(int node) {
+		return inDegree[node] == 1 && offsets[node + 1] - offsets[node] == 1;
+	}
+
+	/**
+	 * <h1>Spells the string a path represents</h1>
+	 * Writes out the first node, then the last base of each node after it.
+	 * <br>
+	 * precondition: path is not empty, and consecutive nodes are joined by edges
+	 * @param path node IDs in order
+	 * @return the string spelled by the path
+	 */
+	public String spell(int[] path) {
+		// initialize return variable to the first node
+		StringBuilder genome = new StringBuilder(path.length + nodeLength - 1);
+		genome.append(nodeString(path[0]));
+
+		// each later node only adds its last base
+		for (int i = 1; i < path.length; i++) genome.append(PackedDNA.decode((int) index.key(path[i])));
+
+		return genome.toString();
+	}
+}
@@ -13,6 +13,9 @@ import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
 
+//for the longest k-mer that packs into a long
+import sequences.PackedDNA;
+
 /**
  * <h1>Contig Generator</h1>
  * Contains the requisite methods to produce all contigs given k-mers,
@@ -155,7 +158,7 @@ public class contigs {
 		// get the in-and-out status of each node
 		Map<String, Boolean> inAndOut = inAndOut(adjList);
 		// will hold all of the nodes that are in-and-out that have not been used yet...
-		ArrayList<String> unusedIAO = new ArrayList<String>();
+		Set<String> unusedIAO = new LinkedHashSet<String>();
 		// initialized to all in-and-out nodes
 		for (String key : inAndOut.keySet()) if (inAndOut.get(key)) unusedIAO.add(key);
 		
@@ -175,8 +178,8 @@ public class contigs {
 					
 					// while the next node is an in-and-out node
 					while (inAndOut.get(next)) {
-						// remove it from the list of unused in-and-out nodes
-						unusedIAO.remove(unusedIAO.indexOf(next));
+						// remove it from the set of unused in-and-out nodes
+						unusedIAO.remove(next);
 						// grab its next node (there will only be one)
 						next = adjList.get(next).get(0);
 						// add next node to the contig
@@ -193,15 +196,16 @@ public class contigs {
 		// while some in-and-out nodes are unused (must be in a loop with each other
 		while (!unusedIAO.isEmpty()) {
 			// get one and add it to a contig
-			next = unusedIAO.remove(0);
+			next = unusedIAO.iterator().next();
+			unusedIAO.remove(next);
 			contig.add(next);
 			
 			// get the next node in this loop
 			next = adjList.get(next).get(0);
-			// while this loop hasn't been closed yet
-			while (!contig.contains(next)) {
+			// while this loop hasn't come back to its first node yet
+			while (!next.equals(contig.get(0))) {
 				// remove this node and add it to the contig
-				unusedIAO.remove(unusedIAO.indexOf(next));
+				unusedIAO.remove(next);
 				contig.add(next);
 				// get the next node
 				next = adjList.get(next).get(0);
@@ -233,6 +237,58 @@ public class contigs {
 		return maxNonBranch(deBru(kmers));
 	}
 	
+	/**
+	 * <h1>Generates the strings of all contigs present in some k-mers</h1>
+	 * Builds a compact DeBrujin graph (packed nodes, integer edges) on all cores, then compacts
+	 * it into unitigs, so no node is ever held as a String. The parallel builder packs whole
+	 * k-mers, so 33-mers (whose nodes still pack) are built one at a time instead.
+	 * <br>
+	 * precondition: kmers are all the same length, 1 < length <= 33, and only contain ACGT
+	 * <br>
+	 * calls: graphBuilder.fromReads, compactGraph.fromKmers, unitigGraph.compact, unitigGraph.sequence
+	 * @param kmers an array of k-mers
+	 * @return the string of every contig found in kmers
+	 */
+	public static ArrayList<String> contigStrings(String[] kmers) {
+		// initialize return variable
+		ArrayList<String> contigs = new ArrayList<String>();
+		
+		// build the graph in parallel if the k-mers pack
+		int k = kmers[0].length();
+		compactGraph graph = k <= PackedDNA.MAX_K ? graphBuilder.fromReads(kmers, k) : compactGraph.fromKmers(kmers);
+		
+		// each unitig of the graph is a contig
+		unitigGraph unitigs = unitigGraph.compact(graph);
+		for (int u = 0; u < unitigs.unitigCount(); u++) contigs.add(unitigs.sequence(u));
+		
+		return contigs;
+	}
+	
+	/**
+	 * <h1>Generates the strings of all contigs present in some error-prone reads</h1>
+	 * Builds a compact DeBrujin graph out of the reads' k-mers, removes the tips, bubbles, and poorly
+	 * covered branches that sequencing errors leave in it, and then compacts what's left into unitigs.
+	 * <br>
+	 * precondition: 1 < k <= 32, some read has a k-mer, maxLength > 0 (about 2k is usual)
+	 * <br>
+	 * calls: graphBuilder.fromReads, graphCleaner.clean, unitigGraph.compact, unitigGraph.sequence
+	 * @param reads an array of reads
+	 * @param k the length of the k-mers
+	 * @param maxLength the longest tip or bubble branch to remove, in edges
+	 * @return the string of every contig found in the cleaned graph
+	 */
+	public static ArrayList<String> contigStrings(String[] reads, int k, int maxLength) {
+		// initialize return variable
+		ArrayList<String> contigs = new ArrayList<String>();
+		
+		// each unitig of the cleaned graph is a contig
+		compactGraph graph = graphCleaner.clean(graphBuilder.fromReads(reads, k), maxLength);
+		unitigGraph unitigs = unitigGraph.compact(graph);
+		for (int u = 0; u < unitigs.unitigCount(); u++) contigs.add(unitigs.sequence(u));
+		
+		return contigs;
+	}
+	
 	/**
 	 * <h1>Reads a file into a string</h1>
 	 * Tries to access the file to read, returns if possible
@@ -293,8 +349,8 @@ public class contigs {
 		}
 	}
 	
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
 		String[] data = readFileAsString("src/reconstruction/data.txt").split("\n");
-		writeContigsToFile("src/reconstruction/output.txt", contigGenerator(data));
+		unitigGraph.compact(graphBuilder.fromReads(data, data[0].length())).writeUnitigs("src/reconstruction/output.txt");
 	}
 }
\ No newline at end of file
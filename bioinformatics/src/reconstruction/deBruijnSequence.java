@@ -0,0 +1,157 @@
+package reconstruction;
+
+// for streaming sequences out
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * <h1>DeBrujin Sequence Generator</h1>
+ * Generates the lexicographically first DeBrujin sequence over any alphabet with the
+ * Fredricksen-Kessler-Maiorana algorithm: list every Lyndon word whose length divides k, in
+ * lexicographic order, and write them one after another. The Lyndon words are stepped through in
+ * place in one int array (Duval's method), which takes constant time per symbol on average, so even
+ * the 2^30 symbols of a binary 30-universal string are just streamed out with no k-mers ever listed.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>k-universal string</strong>: a string that contains every k-mer over an alphabet
+ * 			exactly once</li>
+ * 		<li><strong>DeBrujin sequence</strong>: a cyclic k-universal string, which has one symbol per k-mer
+ * 			(the last k-mers wrap around to the beginning)</li>
+ * 		<li><strong>Lyndon word</strong>: a string that comes strictly before all of its rotations</li>
+ * </ul>
+ * The sequence always starts with k copies of the first symbol, so the linear version is just the
+ * cyclic one with k - 1 more copies of the first symbol on the end.
+ * @author faith
+ */
+class deBruijnSequence {
+	/**
+	 * how many chars to collect before handing them to a writer
+	 */
+	private static final int BUFFER = 1 << 13;
+
+	/**
+	 * the symbols of the alphabet, in order
+	 */
+	private final String alphabet;
+	/**
+	 * the length of the k-mers
+	 */
+	private final int k;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * precondition: alphabet has at least two distinct chars, k > 0, alphabet's length ^ k fits in a long
+	 * @param alphabet the symbols to use, in order
+	 * @param k the length of the k-mers
+	 */
+	public deBruijnSequence(String alphabet, int k) {
+		// check for argument validity
+		if (alphabet.length() < 2)
+			throw new IllegalArgumentException("Can't make k-mers out of " + alphabet.length() + " symbols");
+		if (alphabet.chars().distinct().count() != alphabet.length())
+			throw new IllegalArgumentException("Alphabet \"" + alphabet + "\" repeats a symbol");
+		if (k <= 0)
+			throw new IllegalArgumentException("Can't make " + k + "-mers");
+		if (k * Math.log(alphabet.length()) >= 63 * Math.log(2))
+			throw new IllegalArgumentException("Too many " + k + "-mers over " + alphabet.length() + " symbols to count");
+
+		this.alphabet = alphabet;
+		this.k = k;
+	}
+
+	/**
+	 * <h1>Getter for the length of the cyclic sequence</h1>
+	 * @return the number of k-mers, alphabet's length ^ k
+	 */
+	public long length() {
+		long length = 1;
+		for (int i = 0; i < k; i++) length *= alphabet.length();
+
+		return length;
+	}
+
+	/**
+	 * <h1>Writes the sequence</h1>
+	 * Steps through the Lyndon words in lexicographic order: bump the last symbol, write the word
+	 * if its length divides k, repeat the word until it's k long, then drop all the maxed-out symbols
+	 * off the end. Symbols are collected in a buffer and written a block at a time.
+	 * @param writer where to write the sequence
+	 * @param linear whether to add k - 1 symbols on the end, so that no k-mers wrap around
+	 * @return the number of chars written
+	 * @throws IOException if writer can't be written to
+	 */
+	public long write(Writer writer, boolean linear) throws IOException {
+		int size = alphabet.length();
+		char[] buffer = new char[BUFFER];
+		int filled = 0;
+		long written = 0;
+
+		// the current word, as symbol numbers; it starts as the one-symbol word before the first
+		int[] word = new int[k];
+		int length = 1;
+		word[0] = -1;
+
+		while (length > 0) {
+			word[length - 1]++;
+
+			// a Lyndon word whose length divides k goes into the sequence
+			if (k % length == 0) {
+				for (int i = 0; i < length; i++) {
+					if (filled == BUFFER) {
+						writer.write(buffer, 0, filled);
+						written += filled;
+						filled = 0;
+					}
+					buffer[filled++] = alphabet.charAt(word[i]);
+				}
+			}
+
+			// repeat the word out to k symbols, then trim the last symbols that can't be bumped
+			for (int i = length; i < k; i++) word[i] = word[i - length];
+			length = k;
+			while (length > 0 && word[length - 1] == size - 1) length--;
+		}
+
+		// the sequence begins with k copies of the first symbol, so the wraparound is more of them
+		if (linear) {
+			for (int i = 0; i < k - 1; i++) {
+				if (filled == BUFFER) {
+					writer.write(buffer, 0, filled);
+					written += filled;
+					filled = 0;
+				}
+				buffer[filled++] = alphabet.charAt(0);
+			}
+		}
+
+		writer.write(buffer, 0, filled);
+		return written + filled;
+	}
+
+	/**
+	 * <h1>Builds the sequence as a string</h1>
+	 * precondition: the sequence is short enough to fit in a string
+	 * <br>
+	 * calls: write
+	 * @param linear whether to add k - 1 symbols on the end, so that no k-mers wrap around
+	 * @return the sequence
+	 */
+	public String sequence(boolean linear) {
+		// check for argument validity
+		if (length() + k > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("A sequence of " + length() + " symbols doesn't fit in a string");
+
+		StringWriter writer = new StringWriter((int) length() + k);
+		try {
+			write(writer, linear);
+		}
+		// a StringWriter never throws
+		catch (IOException e) {
+			throw new AssertionError(e);
+		}
+
+		return writer.toString();
+	}
+}
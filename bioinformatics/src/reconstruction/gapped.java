@@ -11,6 +11,8 @@ import java.io.IOException;
 
 // for all kinds of lists
 import java.util.*;
+// for shuffling the edges before each walk
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * <h1>Gapped Genome Reconstruction</h1>
@@ -111,178 +113,40 @@ class gapped {
 		return deBru;
 	}
 	
-	/**
-	 * <h1>Checks if unused edges remain in an adjacency list</h1>
-	 * Iterates over each key and checks if that <code>ArrayList</code> is empty, returning true on
-	 * the first non-empty <code>ArrayList</code> - or false if none return true.
-	 * @param map an adjacency list
-	 * @return if any nodes have unused edges (non-empty arraylists)
-	 */
-	public static boolean hasMoreEdges(Map<String, ArrayList<String>> map) {
-		// loop over each key
-        for (String key : map.keySet())
-        	// if this key's arraylist is not empty, return true
-        	if (!map.get(key).isEmpty()) return true;
-        	
-        // if all arraylists were empty, no unused edges remain
-        return false;
-	}
-	
-	/**
-	 * <h1>Finds an eulerian cycle given a starting node and a map of unused edges</h1>
-	 * Creates an <code>ArrayList</code> representing a cycle, beginning it with start. Then it loops, extending
-	 * cycle by a random outgoing node and updating all relevant variables, until the current node
-	 * has no outgoing nodes to add on. Finally, if extending is true, the first node is removed
-	 * (since it will have been the last node of the pre-existing cycle).
-	 * <br>
-	 * preconditions: start is a key in unused, no strings are empty
-	 * @param start a string to start the cycle at
-	 * @param unused an adjacency list of unused edges
-	 * @param unusedCycle an <code>ArrayList</code> of nodes with unused edges that are on the current cycle
-	 * @param extending whether or not this new cycle is an extension of an existing one
-	 * @return a eulerian cycle based off of unused
-	 */
-	public static ArrayList<String> newCycle(String start, Map<String, ArrayList<String>> unused,
-			ArrayList<String> unusedCycle, boolean extending) {
-		// initialize return variable
-		ArrayList<String> cycle = new ArrayList<String>();
-		// the start of cycle should just be start
-		cycle.add(start);
-		
-		// used as placeholders in the loop
-		String latest;
-		
-		// loop until stuck
-		while (true) {
-			// save the last kd-mer added to cycle (to be used as a key)
-			latest = cycle.get(cycle.size() - 1);
-			// if this string has values left (not "stuck")
-			if (unused.get(latest).size() != 0) {
-				// grab a value from the arraylist of possible next kd-mers, remove it since it's been used
-				cycle.add(unused.get(latest).remove((int) (Math.random() * unused.get(latest).size())));
-				
-				// if the kd-mer used as a key still has values, and is not listed as unusedCycle, add it
-				if (unused.get(latest).size() != 0 && !unusedCycle.contains(latest))
-					unusedCycle.add(latest);
-				// if the kd-mer used as a key no longer has values, and is listed as unsusedCycle, delete it
-				else if (unusedCycle.contains(latest) && unused.get(latest).size() == 0)
-					unusedCycle.remove(latest);
-			}
-			
-			// if stuck, leave!
-			else break;
-		}
-		
-		if (extending) cycle.remove(0);
-		
-		return cycle;
-	}
-	
-	/**
-	 * <h1>Rotates an <code>ArrayList</code> to start and end at a certain value</h1>
-	 * Takes out the first value, then removes each value before newStart and places it
-	 * at the end of cycle. Finally, adds newStart to the end of the cycle.
-	 * <br>
-	 * precondition: newStart is contained in cycle
-	 * @param cycle an <code>ArrayList</code> representing a cycle
-	 * @param newStart the string to start the cycle at
-	 */
-	public static void moveCycle(ArrayList<String> cycle, String newStart) {
-		// take out the first value in cycle (should be repeated on the end)
-		cycle.remove(0);
-		// find where newStart is in the string
-		int curIndex = cycle.indexOf(newStart);
-		
-		// used as a placeholder in the loop
-		String temp;
-		// for each value before curIndex
-		for (int i = 0; i < curIndex; i++) {
-			// move first value in cycle around to the back
-			temp = cycle.remove(0);
-			cycle.add(temp);
-		}
-		
-		// add the new starting value to the end
-		cycle.add(newStart);
-	}
-	
-	/**
-	 * <h1>Deep-copies an adjacency list</h1>
-	 * Iterates through original, adding each key along with a deep-copied <code>ArrayList</code>.
-	 * @param original the map to copy
-	 * @return a deep-copy of the map
-	 */
-	public static Map<String, ArrayList<String>> copy(Map<String, ArrayList<String>> original) {
-		// initialize return variable
-		Map<String, ArrayList<String>> copy = new HashMap<String, ArrayList<String>>();
-		// loop through the original's keys
-		for (String key : original.keySet())
-			// put this key, and a copy of its value, into copy
-			copy.put(key, new ArrayList<String>(original.get(key)));
-		return copy;
-	}
-	
 	/**
 	 * <h1>Finds an eulerian cycle given an adjacency list.</h1>
-	 * Initializes an empty cycle, an adjacency map of unused edges, and an <code>ArrayList</code> of
-	 * nodes on cycle with unused edges. Then, as long as some edges are unused, extends the cycle
-	 * and chooses a new starting node from a list of nodes on cycle with unused edges, rotates the cycle
-	 * to begin on that node, and extends the cycle again.
+	 * Shuffles the order of each node's outgoing edges, so that each call can find a different
+	 * cycle, then walks the cycle from start with an iterative Hierholzer engine. The adjacency
+	 * list itself is never copied or changed.
 	 * <br>
 	 * preconditions: keys in euler have non-empty <code>ArrayList</code>s, euler has a eulerian cycle in it
 	 * <br>
-	 * calls: copy, hasMoreEdges, moveCycle, newCycle
+	 * calls: hierholzer.fromAdjList, hierholzer.shuffleEdges, hierholzer.walkNames
 	 * @param euler an adjacency list
 	 * @param start a string to begin the cycle at (allows different starts to be forced)
 	 * @return an <code>ArrayList</code> representing a eulerian cycle, with nodes in order of use
-	 * @see newCycle
 	 */
 	public static ArrayList<String> eulerToCycle(Map<String, ArrayList<String>> euler, String start) {
-		// initialize return variable
-		ArrayList<String> cycle = new ArrayList<String>();
-		// not that all edges are unused
-		Map<String, ArrayList<String>> unused = copy(euler);
-		// there are no keys in cycle with unused values (since there are no keys in cycle)
-		ArrayList<String> unusedCycle = new ArrayList<String>();
-		
-		// get an initial cycle 
-		cycle.addAll(newCycle(start, unused, unusedCycle, false));
-		// used as a placeholder in the loop
-		int newStart;
-		// while unused edges remain
-		while (hasMoreEdges(unused)) {
-			// get a random new start from a key with unused values
-			newStart = (int) (Math.random() * unusedCycle.size());
-			// rotate the cycle so that it starts/ends on a key with unused values
-			moveCycle(cycle, unusedCycle.get(newStart));
-			// extend the cycle
-			cycle.addAll(newCycle(unusedCycle.get(newStart), unused, unusedCycle, true));
-		}
-		
-		return cycle;
+		hierholzer engine = hierholzer.fromAdjList(euler);
+		engine.shuffleEdges(ThreadLocalRandom.current());
+		return engine.walkNames(engine.id(start));
 	}
 	
 	/**
 	 * <h1>Finds an eulerian path given an adjacency list</h1>
-	 * Deep-copies the adjacency list, then gets a cycle, rotates so that it begins at start, and deletes
-	 * the start node that will be on the end.
+	 * Gets a cycle beginning at start, and deletes the start node that will be on the end.
 	 * <br>
 	 * precondition: euler has already been processed into a cycle, start is a key in euler, all strings 
 	 * are non-empty
 	 * <br>
-	 * calls: copy, eulerToCycle, moveCycle
+	 * calls: eulerToCycle
 	 * @param euler an adjacency list representing an eulerian cycle
 	 * @param start the first node of the path
 	 * @return an <code>ArrayList</code> representing a eulerian path, with nodes in order of use
 	 */
 	public static ArrayList<String> eulerToPath(Map<String, ArrayList<String>> euler, String start) {
-		// deep-copy adjacency list
-		Map<String, ArrayList<String>> path = copy(euler);
-
-        // make a cycle with the cyclic path
-        ArrayList<String> cycle = eulerToCycle(path, start);
-        // rotate the cycle so it starts at start
-        moveCycle(cycle, start);
+        // make a cycle that starts at start
+        ArrayList<String> cycle = eulerToCycle(euler, start);
         // remove last node (it will be start, this gets rid of the added edge)
         cycle.remove(cycle.size() - 1);
 
@@ -343,34 +207,20 @@ class gapped {
 	
 	/**
 	 * <h1>Reconstructs a long string out of kd-mers</h1>
-	 * Turns kdmers into an adjacency list, and processes that adjacency list into a path. Then loops,
-	 * creating a possible new path and checking for validity until the path is valid.
+	 * Packs each kd-mer into a pair of longs and builds a paired DeBrujin graph over them, then
+	 * searches that graph for an eulerian path whose two halves agree base by base, so no whole
+	 * path ever has to be thrown away and tried again.
+	 * <br>
 	 * preconditions: kdmers contains no empty strings, all strings in kdmers are of equal length,
-	 * kdmer's length > d, d > 0
+	 * kdmers's length > d, d >= 0, kd-mers are made of k-mers with 1 < k <= 32
 	 * <br>
-	 * calls: createDeBruAdjList, eulerToPath, gappedToGenome, makeCycle, prefix 
+	 * calls: pairedGraph.fromKdmers, pairedGraph.reconstruct
 	 * @param kdmers String array of kd-mers to construct a string out of
 	 * @param d the distance between each k-mer in the kd-mers
 	 * @return a genome with kd-mer composition equal to kd-mers
 	 */
 	public static String genomeReconstruction(String[] kdmers, int d) {
-		// create an adjacency list based on kmers
-		Map<String, ArrayList<String>> adjList = createDeBruAdjList(kdmers);
-		// turn that adjacency list into a path
-		String start = makeCycle(adjList);
-		
-		// placeholder for the loop
-		String genome;
-		do {
-			// find a path through the kdmers based on the adjacency list
-			ArrayList<String> path = eulerToPath(adjList, start);
-			// reconstruct the genome based on the path
-			genome = gappedToGenome(path, d + 1);
-		}
-		// repeat if that path was not valid
-		while(genome.equals("fail"));
-		
-		return genome;
+		return pairedGraph.fromKdmers(kdmers, d).reconstruct();
 	}
 
 	/**
@@ -0,0 +1,383 @@
+package reconstruction;
+
+// for reading from memory-mapped files
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// for all kinds of lists
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+// for running chunks and shards on many threads
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * <h1>Parallel DeBrujin Graph Builder</h1>
+ * Builds a <code>compactGraph</code> straight from reads, on as many threads as there are cores.
+ * <br>
+ * The reads are split into chunks (slices of an array, or newline-aligned pieces of memory-mapped
+ * files), and each chunk is scanned on its own thread with a rolling packed k-mer. Every k-mer is an
+ * edge, and is dropped into one of several shards picked by hashing its prefix node, so each shard
+ * ends up owning every edge out of its nodes. The shards are then indexed and laid out as
+ * compressed-sparse-row blocks in parallel, and the blocks are stitched end to end into one graph.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>read</strong>: one line of a file (lines starting with &gt; are FASTA headers and skipped)</li>
+ * 		<li><strong>k-mer</strong>: string of length k (AATA has 3-mers AAT and ATA)</li>
+ * 		<li><strong>packed k-mer</strong>: a k-mer stored two bits per base in a long, as
+ * 			<code>sequences.PackedDNA.encode</code> gives</li>
+ * 		<li><strong>shard</strong>: the edges whose prefix nodes hash to the same number</li>
+ * </ul>
+ * Any char that isn't ACGT (upper or lower case) breaks a read, so no k-mer spans it.
+ * @author faith
+ */
+class graphBuilder {
+	/**
+	 * about how many bytes of a file each thread reads at a time
+	 */
+	private static final int CHUNK_BYTES = 1 << 25;
+	/**
+	 * how many bytes to look through at once for the end of a line
+	 */
+	private static final int PROBE_BYTES = 1 << 16;
+	/**
+	 * how many reads of an array each thread reads at a time
+	 */
+	private static final int CHUNK_READS = 1 << 12;
+	/**
+	 * the code of each byte, or -1 if it isn't a base
+	 */
+	static final byte[] CODES = new byte[256];
+
+	static {
+		Arrays.fill(CODES, (byte) -1);
+		String bases = "ACGT";
+		for (int c = 0; c < 4; c++) {
+			CODES[bases.charAt(c)] = (byte) c;
+			CODES[Character.toLowerCase(bases.charAt(c))] = (byte) c;
+		}
+	}
+
+	/**
+	 * the length of the k-mers
+	 */
+	private final int k;
+	/**
+	 * masks off everything but the last k bases
+	 */
+	private final long mask;
+	/**
+	 * the number of shards, a power of two
+	 */
+	private final int shards;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Makes a few shards per thread, so that threads finishing early can take more.
+	 * <br>
+	 * precondition: 1 < k <= 32
+	 * @param k the length of the k-mers
+	 */
+	private graphBuilder(int k) {
+		// check for argument validity
+		if (k < 2 || k > 32)
+			throw new IllegalArgumentException("Can't pack " + k + "-mers into longs");
+
+		this.k = k;
+		this.mask = k == 32 ? -1L : (1L << (2 * k)) - 1;
+		this.shards = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+	}
+
+	/**
+	 * <h1>Builds a graph out of every k-mer in some reads</h1>
+	 * Scans slices of the array on parallel threads.
+	 * <br>
+	 * precondition: 1 < k <= 32, some read has a k-mer
+	 * @param reads the reads
+	 * @param k the length of the k-mers
+	 * @return a DeBrujin graph
+	 */
+	public static compactGraph fromReads(String[] reads, int k) {
+		graphBuilder builder = new graphBuilder(k);
+
+		// scan each slice of the array into shards
+		List<chunk> chunks = IntStream.range(0, (reads.length + CHUNK_READS - 1) / CHUNK_READS).parallel()
+				.mapToObj(c -> {
+					chunk scanned = builder.new chunk();
+					for (int r = c * CHUNK_READS; r < Math.min(reads.length, (c + 1) * CHUNK_READS); r++) {
+						String read = reads[r];
+						for (int i = 0; i < read.length(); i++) {
+							char base = read.charAt(i);
+							scanned.next(base < 256 ? CODES[base] : -1);
+						}
+						scanned.reset();
+					}
+					return scanned;
+				}).collect(Collectors.toList());
+
+		return builder.merge(chunks);
+	}
+
+	/**
+	 * <h1>Builds a graph out of every k-mer in some read files</h1>
+	 * Splits each file into chunks that start and end on line breaks, then maps and
+	 * scans the chunks on parallel threads.
+	 * <br>
+	 * precondition: 1 < k <= 32, the files exist, some read has a k-mer
+	 * @param files the files to read, with one read per line
+	 * @param k the length of the k-mers
+	 * @return a DeBrujin graph
+	 * @throws IOException if a file can't be read
+	 */
+	public static compactGraph fromFiles(Path[] files, int k) throws IOException {
+		graphBuilder builder = new graphBuilder(k);
+
+		// find where every chunk of every file starts and ends
+		ArrayList<Path> chunkFiles = new ArrayList<Path>();
+		ArrayList<long[]> bounds = new ArrayList<long[]>();
+		for (Path file : files) {
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				long size = channel.size();
+				for (long start = 0, end; start < size; start = end) {
+					end = nextLine(channel, Math.min(size, start + CHUNK_BYTES));
+					chunkFiles.add(file);
+					bounds.add(new long[] {start, end});
+				}
+			}
+		}
+
+		// scan each chunk into shards
+		List<chunk> chunks;
+		try {
+			chunks = IntStream.range(0, bounds.size()).parallel().mapToObj(c -> {
+				chunk scanned = builder.new chunk();
+				try (FileChannel channel = FileChannel.open(chunkFiles.get(c), StandardOpenOption.READ)) {
+					long start = bounds.get(c)[0], end = bounds.get(c)[1];
+					scanned.scan(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+				}
+				catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return scanned;
+			}).collect(Collectors.toList());
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		return builder.merge(chunks);
+	}
+
+	/**
+	 * <h1>Finds the first line start at or after a position</h1>
+	 * Reads forward a bit at a time until it passes a newline.
+	 * @param channel the file
+	 * @param position where to start looking
+	 * @return the index just after the next newline, or the file's size if there isn't one
+	 * @throws IOException if the file can't be read
+	 */
+	private static long nextLine(FileChannel channel, long position) throws IOException {
+		long size = channel.size();
+		ByteBuffer probe = ByteBuffer.allocate(PROBE_BYTES);
+
+		// the byte before position might already be a newline
+		if (position == 0 || position >= size) return position;
+		position--;
+
+		while (position < size) {
+			probe.clear();
+			int read = channel.read(probe, position);
+			for (int i = 0; i < read; i++) if (probe.get(i) == '\n') return position + i + 1;
+			position += read;
+		}
+
+		return size;
+	}
+
+	/**
+	 * <h1>Picks the shard of a node</h1>
+	 * Uses a different multiplier than <code>nodeIndex</code>, so the nodes of one shard
+	 * still spread out over that shard's table.
+	 * @param node a packed (k-1)-mer
+	 * @return the node's shard
+	 */
+	private int shard(long node) {
+		return (int) ((node * 0xBF58476D1CE4E5B9L) >>> 40) & (shards - 1);
+	}
+
+	/**
+	 * <h1>Merges scanned chunks into one graph</h1>
+	 * In parallel, gathers each shard's edges and numbers the nodes they start from. Then looks up
+	 * every edge's end node in the shard that owns it (adding the few that no edge starts from), gives
+	 * each shard a block of global IDs, and lays out each shard's edges in parallel. Since each shard's
+	 * nodes have consecutive IDs, its edge blocks can just be copied into place in the final arrays.
+	 * @param chunks the scanned chunks
+	 * @return a DeBrujin graph
+	 */
+	private compactGraph merge(List<chunk> chunks) {
+		long nodeMask = mask >>> 2;
+
+		// gather each shard's edges and number the nodes they start from
+		long[][] edges = new long[shards][];
+		int[][] from = new int[shards][];
+		nodeIndex[] local = new nodeIndex[shards];
+		long total = 0;
+		for (int p = 0; p < shards; p++) for (chunk c : chunks) total += c.sizes[p];
+		if (total == 0)
+			throw new IllegalArgumentException("Can't build a graph out of no " + k + "-mers");
+		if (total >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Can't index " + total + " edges with ints");
+
+		IntStream.range(0, shards).parallel().forEach(p -> {
+			int size = 0;
+			for (chunk c : chunks) size += c.sizes[p];
+			edges[p] = new long[size];
+			size = 0;
+			for (chunk c : chunks) {
+				System.arraycopy(c.kmers[p], 0, edges[p], size, c.sizes[p]);
+				size += c.sizes[p];
+				// let the chunk's copy go as soon as it's been used
+				c.kmers[p] = null;
+			}
+
+			local[p] = new nodeIndex(size / 2);
+			from[p] = new int[size];
+			for (int e = 0; e < size; e++) from[p][e] = local[p].add(edges[p][e] >>> 2);
+		});
+
+		// find the end nodes that no edge starts from, which no shard has numbered yet
+		List<long[]> missing = IntStream.range(0, shards).parallel().mapToObj(p -> {
+			long[] sinks = new long[4];
+			int count = 0;
+			for (long kmer : edges[p]) {
+				long node = kmer & nodeMask;
+				if (local[shard(node)].get(node) < 0) {
+					if (count == sinks.length) sinks = Arrays.copyOf(sinks, count * 2);
+					sinks[count++] = node;
+				}
+			}
+			return Arrays.copyOf(sinks, count);
+		}).collect(Collectors.toList());
+		for (long[] sinks : missing) for (long node : sinks) local[shard(node)].add(node);
+
+		// give each shard a block of node IDs and a block of edges
+		int[] nodeBase = new int[shards + 1];
+		int[] edgeBase = new int[shards + 1];
+		for (int p = 0; p < shards; p++) {
+			nodeBase[p + 1] = nodeBase[p] + local[p].size();
+			edgeBase[p + 1] = edgeBase[p] + edges[p].length;
+		}
+
+		// lay out each shard's edges straight into the final arrays
+		int[] offsets = new int[nodeBase[shards] + 1];
+		int[] targets = new int[edgeBase[shards]];
+		offsets[nodeBase[shards]] = edgeBase[shards];
+		IntStream.range(0, shards).parallel().forEach(p -> {
+			int nodes = local[p].size();
+
+			// count the edges out of each node, and turn the counts into offsets
+			int[] next = new int[nodes + 1];
+			for (int f : from[p]) next[f + 1]++;
+			for (int v = 0; v < nodes; v++) {
+				next[v + 1] += next[v];
+				offsets[nodeBase[p] + v] = edgeBase[p] + next[v];
+			}
+
+			// drop each edge's global end ID into place
+			for (int e = 0; e < edges[p].length; e++) {
+				long node = edges[p][e] & nodeMask;
+				int owner = shard(node);
+				targets[edgeBase[p] + next[from[p][e]]++] = nodeBase[owner] + local[owner].get(node);
+			}
+		});
+
+		// number every node globally, shard by shard, which matches the blocks
+		nodeIndex index = new nodeIndex(nodeBase[shards]);
+		for (int p = 0; p < shards; p++) for (int v = 0; v < local[p].size(); v++) index.add(local[p].key(v));
+
+		return new compactGraph(index, k - 1, offsets, targets);
+	}
+
+	/**
+	 * <h1>The k-mers of one chunk of reads</h1>
+	 * Rolls a packed k-mer along the bases it's given, dropping each complete k-mer into its shard.
+	 */
+	private class chunk {
+		/**
+		 * the packed k-mers in each shard
+		 */
+		private final long[][] kmers = new long[shards][16];
+		/**
+		 * how many k-mers are in each shard
+		 */
+		private final int[] sizes = new int[shards];
+		/**
+		 * the last k bases read
+		 */
+		private long kmer;
+		/**
+		 * how many bases have been read since the last break
+		 */
+		private int filled;
+
+		/**
+		 * <h1>Reads the next base</h1>
+		 * @param code the base's code, or -1 for a break
+		 */
+		void next(int code) {
+			// anything that isn't a base breaks the read
+			if (code < 0) {
+				reset();
+				return;
+			}
+
+			kmer = ((kmer << 2) | code) & mask;
+			if (++filled < k) return;
+
+			// drop the k-mer into the shard of its prefix
+			int p = shard(kmer >>> 2);
+			if (sizes[p] == kmers[p].length) kmers[p] = Arrays.copyOf(kmers[p], sizes[p] * 2);
+			kmers[p][sizes[p]++] = kmer;
+		}
+
+		/**
+		 * <h1>Starts a new read</h1>
+		 */
+		void reset() {
+			filled = 0;
+		}
+
+		/**
+		 * <h1>Reads a mapped piece of a file</h1>
+		 * Line breaks end reads, and lines starting with &gt; are skipped.
+		 * @param buffer the piece of the file
+		 */
+		void scan(ByteBuffer buffer) {
+			boolean header = false;
+			boolean lineStart = true;
+
+			while (buffer.hasRemaining()) {
+				byte b = buffer.get();
+				if (b == '\n') {
+					header = false;
+					lineStart = true;
+					reset();
+					continue;
+				}
+				if (lineStart && b == '>') header = true;
+				lineStart = false;
+
+				// carriage returns are just skipped, so Windows files work
+				if (!header && b != '\r') next(CODES[b & 0xFF]);
+			}
+
+			reset();
+		}
+	}
+}
@@ -0,0 +1,446 @@
+package reconstruction;
+
+// for growing arrays
+import java.util.Arrays;
+// for cleaning components on many threads
+import java.util.stream.IntStream;
+
+/**
+ * <h1>DeBrujin Graph Cleaner</h1>
+ * Removes the tips and bubbles that sequencing errors leave in a <code>compactGraph</code> built from
+ * reads, so that they stop breaking contigs apart. A read with one wrong base adds up to k k-mers that
+ * no other read has, which show up either as a short dead end (near a read's end) or as a short
+ * detour that rejoins the real path (in a read's middle). Either way, its k-mers are seen far less
+ * often than the real ones around them.
+ * <br>
+ * Parallel edges are collapsed first, and how many were collapsed into each edge is its coverage.
+ * The graph is then split into weakly connected components, which can't affect each other, and each
+ * component is cleaned on its own thread: tips and bubbles are removed over and over until none are
+ * left, since removing one can make a node in-and-out and so uncover another. Errors that many reads
+ * share, or that sit close together, tangle into branches that are neither tips nor bubbles, so then
+ * any branch with far less coverage than is typical for the graph is removed too, and tips and bubbles
+ * are looked for again. The cleaned graph keeps one edge per k-mer, and drops nodes that lose all their
+ * edges.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>in-and-out node</strong>: a node that has one incoming and one outgoing edge</li>
+ * 		<li><strong>junction</strong>: a node that isn't in-and-out</li>
+ * 		<li><strong>branch</strong>: a path from a junction through in-and-out nodes</li>
+ * 		<li><strong>coverage</strong>: how many times a k-mer was seen, averaged over a branch's edges</li>
+ * 		<li><strong>tip</strong>: a short branch from a junction to a dead end (or from a dead end to a
+ * 			junction) with no more coverage than the junction's other edges</li>
+ * 		<li><strong>bubble</strong>: a short branch out of a junction that ends where a path with
+ * 			more coverage from the same junction ends, no further away</li>
+ * 		<li><strong>typical coverage</strong>: the coverage of the edge that the median k-mer seen is on
+ * 			(so the many error edges seen once count for little)</li>
+ * </ul>
+ * @author faith
+ */
+class graphCleaner {
+	/**
+	 * a branch is removed for low coverage if this many times its coverage is still below typical
+	 */
+	private static final int LOW_COVERAGE = 5;
+	/**
+	 * the graph being cleaned
+	 */
+	private final compactGraph graph;
+	/**
+	 * the longest tip or bubble branch to remove, in edges
+	 */
+	private final int maxLength;
+	/**
+	 * the collapsed edges out of node v are edges offsets[v] to offsets[v + 1] - 1
+	 */
+	private final int[] offsets;
+	/**
+	 * the start node, end node, and coverage of each collapsed edge
+	 */
+	private final int[] source, target, coverage;
+	/**
+	 * the collapsed edges into node v are inEdges[inOffsets[v]] to inEdges[inOffsets[v + 1] - 1]
+	 */
+	private final int[] inOffsets, inEdges;
+	/**
+	 * whether each collapsed edge is still in the graph
+	 */
+	private final boolean[] live;
+	/**
+	 * how many live edges go out of and into each node
+	 */
+	private final int[] outDegree, inDegree;
+	/**
+	 * the typical coverage of the graph's edges
+	 */
+	private final int typical;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Collapses the parallel edges out of each node into one edge with a coverage,
+	 * and indexes the collapsed edges by the node they go into.
+	 * @param graph the graph to clean
+	 * @param maxLength the longest tip or bubble branch to remove, in edges
+	 */
+	private graphCleaner(compactGraph graph, int maxLength) {
+		this.graph = graph;
+		this.maxLength = maxLength;
+		int nodes = graph.nodeCount();
+
+		// collapse each node's edges by sorting its targets and counting repeats
+		offsets = new int[nodes + 1];
+		int[] collapsed = new int[graph.edgeCount()];
+		int[] counts = new int[graph.edgeCount()];
+		int edges = 0;
+		for (int v = 0; v < nodes; v++) {
+			int start = graph.edgeStart(v), end = graph.edgeStart(v + 1);
+			int[] targets = new int[end - start];
+			for (int e = start; e < end; e++) targets[e - start] = graph.edgeTarget(e);
+			Arrays.sort(targets);
+
+			offsets[v] = edges;
+			for (int i = 0; i < targets.length; i++) {
+				if (i > 0 && targets[i] == targets[i - 1]) counts[edges - 1]++;
+				else {
+					collapsed[edges] = targets[i];
+					counts[edges++] = 1;
+				}
+			}
+		}
+		offsets[nodes] = edges;
+
+		target = Arrays.copyOf(collapsed, edges);
+		coverage = Arrays.copyOf(counts, edges);
+		source = new int[edges];
+		live = new boolean[edges];
+		Arrays.fill(live, true);
+		outDegree = new int[nodes];
+		inDegree = new int[nodes];
+		for (int v = 0; v < nodes; v++) {
+			outDegree[v] = offsets[v + 1] - offsets[v];
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+				source[e] = v;
+				inDegree[target[e]]++;
+			}
+		}
+
+		// index the edges by end node
+		inOffsets = new int[nodes + 1];
+		for (int v = 0; v < nodes; v++) inOffsets[v + 1] = inOffsets[v] + inDegree[v];
+		inEdges = new int[edges];
+		int[] next = Arrays.copyOf(inOffsets, nodes);
+		for (int e = 0; e < edges; e++) inEdges[next[target[e]]++] = e;
+
+		// find the coverage of the median k-mer, counting down from the best-covered edges
+		int[] sorted = coverage.clone();
+		Arrays.sort(sorted);
+		long seen = 0;
+		int median = sorted.length;
+		while (median > 0 && 2 * seen < graph.edgeCount()) seen += sorted[--median];
+		typical = median < sorted.length ? sorted[median] : 0;
+	}
+
+	/**
+	 * <h1>Cleans a graph</h1>
+	 * Removes tips and bubbles up to some length, and poorly covered branches of any length, from
+	 * every component in parallel, then builds a new graph out of whatever edges are left.
+	 * <br>
+	 * precondition: maxLength > 0 (about twice the k-mer length is usual)
+	 * @param graph a DeBrujin graph built from reads, with one edge per k-mer seen
+	 * @param maxLength the longest tip or bubble branch to remove, in edges
+	 * @return the cleaned graph, with one edge per k-mer kept
+	 */
+	public static compactGraph clean(compactGraph graph, int maxLength) {
+		// check for argument validity
+		if (maxLength <= 0)
+			throw new IllegalArgumentException("Can't remove branches of " + maxLength + " edges");
+
+		graphCleaner cleaner = new graphCleaner(graph, maxLength);
+		int[][] components = cleaner.components();
+		IntStream.range(0, components.length).parallel().forEach(c -> cleaner.cleanComponent(components[c]));
+
+		return cleaner.rebuild();
+	}
+
+	/**
+	 * <h1>Splits the graph into weakly connected components</h1>
+	 * Joins the two ends of every edge with union-find (so every root is its set's smallest
+	 * node), then groups the nodes by root.
+	 * @return the node IDs of each component, in increasing order
+	 */
+	private int[][] components() {
+		int nodes = outDegree.length;
+
+		// join the two ends of every edge
+		int[] parent = new int[nodes];
+		for (int v = 0; v < nodes; v++) parent[v] = v;
+		for (int e = 0; e < target.length; e++) {
+			int a = find(parent, source[e]), b = find(parent, target[e]);
+			if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+		}
+
+		// number the roots, then count and place each component's nodes
+		int[] component = new int[nodes];
+		int count = 0;
+		for (int v = 0; v < nodes; v++) {
+			int root = find(parent, v);
+			component[v] = root == v ? count++ : component[root];
+		}
+		int[] sizes = new int[count];
+		for (int v = 0; v < nodes; v++) sizes[component[v]]++;
+
+		int[][] components = new int[count][];
+		for (int c = 0; c < count; c++) components[c] = new int[sizes[c]];
+		Arrays.fill(sizes, 0);
+		for (int v = 0; v < nodes; v++) components[component[v]][sizes[component[v]]++] = v;
+
+		return components;
+	}
+
+	/**
+	 * <h1>Finds the root of a node's set</h1>
+	 * Halves the path to the root as it goes.
+	 * @param parent each node's parent in the union-find forest
+	 * @param node a node ID
+	 * @return the root of its set
+	 */
+	private static int find(int[] parent, int node) {
+		while (parent[node] != node) {
+			parent[node] = parent[parent[node]];
+			node = parent[node];
+		}
+
+		return node;
+	}
+
+	/**
+	 * <h1>Cleans one component until there is nothing left to remove</h1>
+	 * Only touches the edges and degrees of the component's own nodes, so components
+	 * can be cleaned at the same time.
+	 * @param nodes the node IDs of the component
+	 */
+	private void cleanComponent(int[] nodes) {
+		boolean changed = true;
+		while (changed) {
+			// a lone node, or a lone edge, can't have a tip or a bubble
+			boolean simplified = nodes.length >= 3;
+			while (simplified) {
+				simplified = false;
+				for (int v : nodes) simplified |= removeTip(v);
+				for (int v : nodes) simplified |= popBubble(v);
+			}
+
+			changed = false;
+			for (int v : nodes) changed |= removeWeakBranches(v);
+		}
+	}
+
+	/**
+	 * <h1>Removes the tip ending or starting at a node, if there is one</h1>
+	 * Walks from a dead end through in-and-out nodes (backwards from a node with no outgoing
+	 * edges, forwards from a node with no incoming ones) until it reaches a junction.
+	 * @param node a node ID
+	 * @return whether a tip was removed
+	 */
+	private boolean removeTip(int node) {
+		boolean forward;
+		if (outDegree[node] == 0 && inDegree[node] == 1) forward = false;
+		else if (inDegree[node] == 0 && outDegree[node] == 1) forward = true;
+		else return false;
+
+		// walk to the junction, collecting the edges on the way
+		int[] path = new int[maxLength];
+		int length = 0;
+		long total = 0;
+		int current = node;
+		do {
+			if (length == maxLength) return false;
+			int edge = forward ? liveOut(current) : liveIn(current);
+			path[length++] = edge;
+			total += coverage[edge];
+			current = forward ? target[edge] : source[edge];
+		} while (inDegree[current] == 1 && outDegree[current] == 1);
+
+		// the tip must branch off of something with at least as much coverage
+		int rival = 0;
+		if (forward && inDegree[current] > 1) {
+			for (int i = inOffsets[current]; i < inOffsets[current + 1]; i++) {
+				int edge = inEdges[i];
+				if (live[edge] && edge != path[length - 1]) rival = Math.max(rival, coverage[edge]);
+			}
+		}
+		else if (!forward && outDegree[current] > 1) {
+			for (int edge = offsets[current]; edge < offsets[current + 1]; edge++)
+				if (live[edge] && edge != path[length - 1]) rival = Math.max(rival, coverage[edge]);
+		}
+		if (rival == 0 || (double) total / length > rival) return false;
+
+		for (int i = 0; i < length; i++) remove(path[i]);
+		return true;
+	}
+
+	/**
+	 * <h1>Pops the bubbles starting at a node, if there are any</h1>
+	 * Follows each edge out of the node through in-and-out nodes to the next junction. If some other
+	 * edge out of the node leads to that same junction, just as quickly, along a path with more coverage,
+	 * the branch is removed. That other path is found by always taking the edge with the most coverage,
+	 * and may go through junctions, since the real path next to an error is often split by other errors.
+	 * @param node a node ID
+	 * @return whether a branch was removed
+	 */
+	private boolean popBubble(int node) {
+		if (outDegree[node] < 2) return false;
+
+		boolean popped = false;
+		for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+			if (!live[edge] || outDegree[node] < 2) continue;
+
+			// follow the branch to its junction
+			int length = 0;
+			long total = 0;
+			int end = node, next = edge;
+			do {
+				length++;
+				total += coverage[next];
+				end = target[next];
+				if (inDegree[end] != 1 || outDegree[end] != 1) break;
+				next = liveOut(end);
+			} while (length <= maxLength);
+			if (length > maxLength) continue;
+
+			// look for a better-covered path to the same junction from every other edge
+			for (int other = offsets[node]; other < offsets[node + 1]; other++) {
+				if (other == edge || !live[other]) continue;
+
+				int steps = 1;
+				long otherTotal = coverage[other];
+				int current = target[other];
+				while (current != end && steps < length && outDegree[current] > 0) {
+					int best = -1;
+					for (int e = offsets[current]; e < offsets[current + 1]; e++)
+						if (live[e] && (best < 0 || coverage[e] > coverage[best])) best = e;
+					steps++;
+					otherTotal += coverage[best];
+					current = target[best];
+				}
+
+				if (current == end && (double) otherTotal / steps > (double) total / length) {
+					removeBranch(edge, length);
+					popped = true;
+					break;
+				}
+			}
+		}
+
+		return popped;
+	}
+
+	/**
+	 * <h1>Removes the poorly covered branches starting at a node, if there are any</h1>
+	 * Follows each edge out of a node that isn't in-and-out through in-and-out nodes to the next
+	 * junction, and removes the branch if LOW_COVERAGE times its coverage is still below typical,
+	 * however long it is and whatever is at its ends.
+	 * @param node a node ID
+	 * @return whether a branch was removed
+	 */
+	private boolean removeWeakBranches(int node) {
+		if (inDegree[node] == 1 && outDegree[node] == 1) return false;
+
+		boolean removed = false;
+		for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+			if (!live[edge]) continue;
+
+			// follow the branch to its junction
+			int length = 0;
+			long total = 0;
+			int end, next = edge;
+			while (true) {
+				length++;
+				total += coverage[next];
+				end = target[next];
+				if (end == node || inDegree[end] != 1 || outDegree[end] != 1) break;
+				next = liveOut(end);
+			}
+
+			if ((double) total / length * LOW_COVERAGE < typical) {
+				removeBranch(edge, length);
+				removed = true;
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * <h1>Removes a branch found by popBubble or removeWeakBranches</h1>
+	 * Finds each next edge before removing the one before it, since removing an
+	 * edge can change which nodes look in-and-out.
+	 * @param edge the branch's first edge
+	 * @param length the number of edges in the branch
+	 */
+	private void removeBranch(int edge, int length) {
+		for (int i = 0; i < length; i++) {
+			int next = i + 1 < length ? liveOut(target[edge]) : -1;
+			remove(edge);
+			edge = next;
+		}
+	}
+
+	/**
+	 * <h1>Finds a node's first live outgoing edge</h1>
+	 * @param node a node ID with a live outgoing edge
+	 * @return the edge
+	 */
+	private int liveOut(int node) {
+		int edge = offsets[node];
+		while (!live[edge]) edge++;
+
+		return edge;
+	}
+
+	/**
+	 * <h1>Finds a node's first live incoming edge</h1>
+	 * @param node a node ID with a live incoming edge
+	 * @return the edge
+	 */
+	private int liveIn(int node) {
+		int i = inOffsets[node];
+		while (!live[inEdges[i]]) i++;
+
+		return inEdges[i];
+	}
+
+	/**
+	 * <h1>Removes an edge</h1>
+	 * @param edge a live edge
+	 */
+	private void remove(int edge) {
+		live[edge] = false;
+		outDegree[source[edge]]--;
+		inDegree[target[edge]]--;
+	}
+
+	/**
+	 * <h1>Builds a graph out of the live edges</h1>
+	 * Numbers the nodes that still have edges in their old order.
+	 * @return the cleaned graph
+	 */
+	private compactGraph rebuild() {
+		int nodes = outDegree.length;
+		nodeIndex index = new nodeIndex(nodes);
+		int[] ids = new int[nodes];
+		for (int v = 0; v < nodes; v++) ids[v] = outDegree[v] + inDegree[v] > 0 ? index.add(graph.node(v)) : -1;
+
+		int edges = 0;
+		for (boolean kept : live) if (kept) edges++;
+		int[] from = new int[edges], to = new int[edges];
+		edges = 0;
+		for (int e = 0; e < live.length; e++) {
+			if (!live[e]) continue;
+			from[edges] = ids[source[e]];
+			to[edges++] = ids[target[e]];
+		}
+
+		return new compactGraph(index, graph.nodeLength(), from, to, edges);
+	}
+}
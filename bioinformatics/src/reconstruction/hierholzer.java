@@ -0,0 +1,312 @@
+package reconstruction;
+
+// for writing genomes out as they are spelled
+import java.io.IOException;
+import java.io.Writer;
+
+// for all kinds of lists
+import java.util.*;
+// for naming nodes while writing
+import java.util.function.IntFunction;
+
+/**
+ * <h1>Eulerian Path Engine</h1>
+ * Finds eulerian paths and cycles with an iterative version of Hierholzer's algorithm, in time
+ * proportional to the number of edges. The graph is held compressed-sparse-row style (the edges out of
+ * node v are <code>targets[offsets[v]]</code> to <code>targets[offsets[v + 1] - 1]</code>), and each
+ * node keeps a cursor to its next unused edge, so nothing is ever copied, rotated, or scanned for leftovers.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>adjacency list</strong>: a map with a node associated
+ * 			with a list of nodes that represent outgoing nodes</li>
+ * 		<li><strong>eulerian path</strong>: a path that uses every edge exactly once</li>
+ * 		<li><strong>eulerian cycle</strong>: an eulerian path that ends where it started</li>
+ * 		<li><strong>start</strong>: the node with one more outgoing than incoming edge, or the
+ * 			first node with edges if there isn't one</li>
+ * 		<li><strong>end</strong>: the node with one more incoming than outgoing edge, or the
+ * 			start if there isn't one</li>
+ * </ul>
+ * @author faith
+ */
+class hierholzer {
+	/**
+	 * where each node's edges start in targets (with one extra entry for the end)
+	 */
+	private final int[] offsets;
+	/**
+	 * the node at the end of each edge, grouped by the node at the start
+	 */
+	private final int[] targets;
+	/**
+	 * the name of each node, if the graph came from an adjacency list
+	 */
+	private final String[] names;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Walks the given arrays directly, without copying them.
+	 * <br>
+	 * precondition: offsets is non-decreasing, starts at 0, and ends at targets's length
+	 * @param offsets where each node's edges start in targets
+	 * @param targets the node at the end of each edge
+	 */
+	hierholzer(int[] offsets, int[] targets) {
+		this(offsets, targets, null);
+	}
+
+	/**
+	 * <h1>Constructor with node names</h1>
+	 * @param offsets where each node's edges start in targets
+	 * @param targets the node at the end of each edge
+	 * @param names the name of each node
+	 */
+	private hierholzer(int[] offsets, int[] targets, String[] names) {
+		this.offsets = offsets;
+		this.targets = targets;
+		this.names = names;
+	}
+
+	/**
+	 * <h1>Sets up an engine for an adjacency list</h1>
+	 * Numbers the nodes in order of first appearance (keys before their values), then lays
+	 * each key's values out in one block, keeping their order. The adjacency list isn't changed.
+	 * <br>
+	 * precondition: adjList contains no null strings
+	 * @param adjList an adjacency list
+	 * @return an engine for the adjacency list
+	 */
+	public static hierholzer fromAdjList(Map<String, ArrayList<String>> adjList) {
+		// number the nodes
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		ArrayList<String> names = new ArrayList<String>();
+		int edges = 0;
+		for (Map.Entry<String, ArrayList<String>> entry : adjList.entrySet()) {
+			if (ids.putIfAbsent(entry.getKey(), names.size()) == null) names.add(entry.getKey());
+			for (String out : entry.getValue()) if (ids.putIfAbsent(out, names.size()) == null) names.add(out);
+			edges += entry.getValue().size();
+		}
+
+		// count the edges out of each node, and turn the counts into offsets
+		int[] offsets = new int[names.size() + 1];
+		for (Map.Entry<String, ArrayList<String>> entry : adjList.entrySet())
+			offsets[ids.get(entry.getKey()) + 1] += entry.getValue().size();
+		for (int v = 0; v < names.size(); v++) offsets[v + 1] += offsets[v];
+
+		// fill in each node's block
+		int[] targets = new int[edges];
+		for (Map.Entry<String, ArrayList<String>> entry : adjList.entrySet()) {
+			int next = offsets[ids.get(entry.getKey())];
+			for (String out : entry.getValue()) targets[next++] = ids.get(out);
+		}
+
+		return new hierholzer(offsets, targets, names.toArray(new String[0]));
+	}
+
+	/**
+	 * <h1>Getter for the number of nodes</h1>
+	 * @return the number of nodes
+	 */
+	public int nodeCount() {
+		return offsets.length - 1;
+	}
+
+	/**
+	 * <h1>Gets the name of a node</h1>
+	 * precondition: the engine came from an adjacency list, 0 <= node < nodeCount
+	 * @param node a node ID
+	 * @return the node's name in the adjacency list
+	 */
+	public String name(int node) {
+		return names[node];
+	}
+
+	/**
+	 * <h1>Finds the ID of a named node</h1>
+	 * Scans the names, since this only needs to be done once per walk.
+	 * @param name a node's name in the adjacency list
+	 * @return the node's ID, or -1 if it isn't a node
+	 */
+	public int id(String name) {
+		for (int v = 0; v < names.length; v++) if (names[v].equals(name)) return v;
+		return -1;
+	}
+
+	/**
+	 * <h1>Counts the edges coming into each node</h1>
+	 * @return the indegree of each node
+	 */
+	private int[] inDegrees() {
+		int[] in = new int[nodeCount()];
+		for (int target : targets) in[target]++;
+		return in;
+	}
+
+	/**
+	 * <h1>Finds where an eulerian path has to start</h1>
+	 * Looks for a node with one more outgoing than incoming edge; if there isn't one,
+	 * every node is balanced and the first node with any edges will do.
+	 * @return the start node's ID, or -1 if there are no edges
+	 */
+	public int start() {
+		int[] in = inDegrees();
+
+		// initialize return variable
+		int start = -1;
+		for (int v = 0; v < in.length; v++) {
+			int out = offsets[v + 1] - offsets[v];
+			if (out - in[v] == 1) return v;
+			if (start < 0 && out > 0) start = v;
+		}
+
+		return start;
+	}
+
+	/**
+	 * <h1>Finds where an eulerian path has to end</h1>
+	 * Looks for a node with one more incoming than outgoing edge; if there isn't one,
+	 * the path is a cycle and ends at the start.
+	 * <br>
+	 * calls: start
+	 * @return the end node's ID, or -1 if there are no edges
+	 */
+	public int end() {
+		int[] in = inDegrees();
+		for (int v = 0; v < in.length; v++) if (in[v] - (offsets[v + 1] - offsets[v]) == 1) return v;
+
+		return start();
+	}
+
+	/**
+	 * <h1>Shuffles the order of the edges out of each node</h1>
+	 * Since walks always take a node's unused edges in order, this makes the next walk a random one.
+	 * @param random where the randomness comes from
+	 */
+	public void shuffleEdges(Random random) {
+		for (int v = 0; v < nodeCount(); v++) {
+			// Fisher-Yates within this node's block
+			for (int i = offsets[v + 1] - 1; i > offsets[v]; i--) {
+				int j = offsets[v] + random.nextInt(i - offsets[v] + 1);
+				int temp = targets[i];
+				targets[i] = targets[j];
+				targets[j] = temp;
+			}
+		}
+	}
+
+	/**
+	 * <h1>Finds an eulerian path (or cycle) from a node</h1>
+	 * Keeps a stack of nodes, starting with start. While the top node has an unused edge, the edge's
+	 * end is pushed; once it has none, it is popped onto the back of the path. Nodes pop in reverse
+	 * path order, so the path is filled in from the back, and cycles found partway through are spliced
+	 * in automatically because they are popped while the node they branched from is still on the stack.
+	 * <br>
+	 * precondition: the graph has an eulerian path (or cycle) beginning at start
+	 * @param start the ID of the node to begin at
+	 * @return the node IDs of the path, in order
+	 * @throws IllegalArgumentException if some edges can't be reached from start
+	 */
+	public int[] walk(int start) {
+		// the next unused edge out of each node
+		int[] cursor = Arrays.copyOf(offsets, nodeCount());
+		// the path, filled in from the back
+		int[] path = new int[targets.length + 1];
+		int filled = path.length;
+		int[] stack = new int[targets.length + 1];
+		int top = 0;
+
+		stack[top++] = start;
+		while (top > 0) {
+			int v = stack[top - 1];
+			// go down an unused edge if there is one
+			if (cursor[v] < offsets[v + 1]) stack[top++] = targets[cursor[v]++];
+			// otherwise this node is done
+			else path[--filled] = stack[--top];
+		}
+
+		// if some edges were never reached, there was no eulerian path from start
+		if (filled != 0)
+			throw new IllegalArgumentException("Graph has no eulerian path from node " + start);
+
+		return path;
+	}
+
+	/**
+	 * <h1>Finds an eulerian path (or cycle) as node names</h1>
+	 * precondition: the engine came from an adjacency list with an eulerian path beginning at start
+	 * <br>
+	 * calls: walk
+	 * @param start the ID of the node to begin at
+	 * @return an <code>ArrayList</code> of node names, in order of use
+	 */
+	public ArrayList<String> walkNames(int start) {
+		int[] path = walk(start);
+
+		// initialize return variable
+		ArrayList<String> named = new ArrayList<String>(path.length);
+		for (int v : path) named.add(names[v]);
+
+		return named;
+	}
+
+	/**
+	 * <h1>Writes the string an eulerian path spells, as the path is found</h1>
+	 * Walks the graph with every edge flipped, from the end back to the start. Nodes pop off the
+	 * stack in reverse order of that backwards path, which is forwards order for the real one, so each
+	 * node's chars can be written the moment it pops and the path itself is never stored. The first
+	 * node is written whole, and every node after it adds only its last char.
+	 * <br>
+	 * precondition: the graph has an eulerian path, no node label is empty
+	 * @param writer where to write the spelled string
+	 * @param label gives the string of a node from its ID
+	 * @return the number of chars written
+	 * @throws IOException if writer can't be written to
+	 * @throws IllegalArgumentException if the graph has no eulerian path (after writing what it could)
+	 */
+	public long writeSpelled(Writer writer, IntFunction<String> label) throws IOException {
+		int nodes = nodeCount();
+		int end = end();
+		if (end < 0)
+			throw new IllegalArgumentException("Can't walk a graph with no edges");
+
+		// flip every edge, keeping them grouped by their new start
+		int[] in = inDegrees();
+		int[] reverseOffsets = new int[nodes + 1];
+		for (int v = 0; v < nodes; v++) reverseOffsets[v + 1] = reverseOffsets[v] + in[v];
+		int[] reverseTargets = new int[targets.length];
+		int[] next = Arrays.copyOf(reverseOffsets, nodes);
+		for (int v = 0; v < nodes; v++)
+			for (int e = offsets[v]; e < offsets[v + 1]; e++) reverseTargets[next[targets[e]]++] = v;
+
+		// next now serves as the cursor into each node's flipped edges
+		System.arraycopy(reverseOffsets, 0, next, 0, nodes);
+		int[] stack = new int[targets.length + 1];
+		int top = 0;
+		long written = 0;
+		int popped = 0;
+
+		stack[top++] = end;
+		while (top > 0) {
+			int v = stack[top - 1];
+			if (next[v] < reverseOffsets[v + 1]) stack[top++] = reverseTargets[next[v]++];
+			else {
+				// write the node as it pops
+				String chars = label.apply(stack[--top]);
+				if (popped++ == 0) {
+					writer.write(chars);
+					written += chars.length();
+				}
+				else {
+					writer.write(chars.charAt(chars.length() - 1));
+					written++;
+				}
+			}
+		}
+
+		// if some edges were never reached, there was no eulerian path
+		if (popped != targets.length + 1)
+			throw new IllegalArgumentException("Graph has no eulerian path");
+
+		return written;
+	}
+}
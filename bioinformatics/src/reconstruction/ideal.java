@@ -60,220 +60,63 @@ class ideal {
 		return deBru;
 	}
 	
-	// check if unused edges remain in an eulerian adjacency list
-	// PRECONDITION: nothing
-	public static boolean hasMoreEdges(Map<String, ArrayList<String>> map) {
-		// iterating over map
-        for (String value : map.keySet())  {
-        	// if this key's arraylist is not empty, return true
-        	if (!map.get(value).isEmpty()) return true;
-        }
-        // if all arraylists were empty, no unsused edges remain
-        return false;
-	}
-	
-	// finds an eulerian cycle given a start and a map of unused edges in an adjacency list
-	// PRECONDITION: unused is a valid eulerian adjacency list
-	public static ArrayList<String> newCycle(String start, Map<String, ArrayList<String>> unused,
-			ArrayList<String> unusedCycle) {
-		// initialize return variable
-		ArrayList<String> cycle = new ArrayList<String>();
-		
-		// if start is empty (indicates no current cycle exists)
-		if (start.length() == 0)
-			// stick the first available key into the cycle
-			cycle.add(unused.entrySet().stream().findFirst().get().getKey());
-		// else the start of cycle should just be start
-		else cycle.add(start);
-		
-		// used as placeholders in the loop
-		String next, latest;
-		// just keep swimming :)
-		while (true) {
-			// save the last string added to cycle (to be used as a key)
-			latest = cycle.get(cycle.size() - 1);
-			
-			// if this string has no values left ("stuck")
-			if (unused.get(latest).size() != 0) {
-				// grab a value from the arraylist of possible next strings, remove it since it's been used
-				next = unused.get(latest).remove(0);
-				
-				// if the string used as a key still has values, and is not listed as unusedCycle, add it
-				if (unused.get(latest).size() != 0 && !unusedCycle.contains(latest)) unusedCycle.add(latest);
-				// if the string used as a key no longer has values, and is listed as unsusedCycle, delete it
-				else if (unusedCycle.contains(latest) && unused.get(latest).size() == 0) unusedCycle.remove(latest);
-				
-				// add the next string to the cycle
-				cycle.add(next);
-			}
-			
-			// if stuck, leave!
-			else break;
-		}
-		
-		// if there was a start already in place, remove this one's start
-		if (start != "") cycle.remove(0);
-		
-		return cycle;
-	}
-	
-	// rotate an eulerian cycle to start and end at a certain, contained, string
-	// PRECONDTION: newStart is contained in cycle, cycle starts and ends with the same value
-	public static void moveCycle(ArrayList<String> cycle, String newStart) {
-		// take out the first value in cycle (should be repeated on the end)
-		cycle.remove(0);
-		// find where newStart is in the string
-		int curIndex = cycle.indexOf(newStart);
-		
-		// used as a placeholder in the loop
-		String temp;
-		// for each value before curIndex
-		for (int i = 0; i < curIndex; i++) {
-			// move first value in cycle around to the back
-			temp = cycle.remove(0);
-			cycle.add(temp);
-		}
-		
-		// add the new starting value to the end
-		cycle.add(newStart);
-	}
-	
-	// finds an eulerian cycle given an adjacency list
+	// finds an eulerian cycle given an adjacency list, starting and ending at its first key
+	// the adjacency list isn't changed
 	// PRECONDITION: all keys in euler have non-empty arraylists,
 	// 				 euler represents a eulerian cycle's adjacency list
-	// CALLS: newCycle, hasMoreEdges, moveCycle
+	// CALLS: hierholzer.fromAdjList, hierholzer.walkNames
 	public static ArrayList<String> eulerToCycle(Map<String, ArrayList<String>> euler) {
-		// initialize return variable
-		ArrayList<String> cycle = new ArrayList<String>();
-		
-		// not that all edges are unused
-		Map<String, ArrayList<String>> unused = new LinkedHashMap<String, ArrayList<String>>(euler);
-		// there are no keys in cycle with unused values (since there are no keys in cycle)
-		ArrayList<String> unusedCycle = new ArrayList<String>();
-		
-		// get an initial cycle 
-		cycle.addAll(newCycle("", unused, unusedCycle));
-		
-		// while unused edges remain
-		while (hasMoreEdges(unused)) {
-			// rotate the cycle so that it starts/ends on a key with unused values
-			moveCycle(cycle, unusedCycle.get(0));
-			// extend the cycle
-			cycle.addAll(newCycle(unusedCycle.get(0), unused, unusedCycle));
-		}
-		
-		return cycle;
+		// the first key is always node 0
+		return hierholzer.fromAdjList(euler).walkNames(0);
 	}
 	
 	// finds an eulerian path given an adjacency list
+	// the adjacency list isn't changed
 	// PRECONDITION: all keys in path have non-empty arraylists,
 	// 				 path represents a eulerian path's adjacency list
-	// CALLS: eulerToCycle, moveCycle
+	// CALLS: hierholzer.fromAdjList, hierholzer.start, hierholzer.walkNames
 	public static ArrayList<String> eulerToPath(Map<String, ArrayList<String>> path) {
-		// first, convert the path to a cycle by connecting the end to the start
-		
-		// used to save the beginning and ending nodes
-		String start = "";
-		String end = "";
-		// for each node in path, tracks outgoing - incoming edges
-		Map<String, Integer> count = new HashMap<String, Integer>();
-		
-		// loop over path's keys
-        for (String key : path.keySet())  {
-        	// add the number of outgoing paths to count at key
-        	if (count.get(key) != null) count.put(key, count.get(key) + path.get(key).size());
-        	else count.put(key, path.get(key).size());
-        	
-        	// loop over all outgoing paths from key
-        	for (String out : path.get(key)) {
-        		// if this outgoing path's node has not outgoing paths itself, it is the end node
-        		if (path.get(out) == null) end = out;
-        		
-        		// decrement this path's node
-        		else if (count.get(out) != null) count.put(out, count.get(out) - 1);
-        		else count.put(out, -1);
-        	}
-        }
-        
-        // loop over count
-        for (String key : count.keySet()) {
-        	// if there is one extra outgoing path, this node is the start
-        	if (count.get(key) == 1) start = key;
-        	// if there is one extra incoming path, this node is the end
-        	if (count.get(key) == -1) end = key;
-        }
-        
-        // add an edge going from end to start in path
-        if (!(path.get(end) != null)) path.put(end, new ArrayList<String>());
-        path.get(end).add(start);
-        
-        // finally, make a cycle using the now-cyclic path
-        ArrayList<String> cycle = eulerToCycle(path);
-        // rotate the cycle so it starts at start
-        moveCycle(cycle, start);
-        // remove last node (it will be start, this gets rid of the added edge)
-        cycle.remove(cycle.size() - 1);
-        
-        
-		return cycle;
+		hierholzer engine = hierholzer.fromAdjList(path);
+		// start at the node with an extra outgoing edge
+		return engine.walkNames(engine.start());
 	}
 	
 	// reconstructs a long string given many k-mers
-	// PRECONDTION: kmers contains no empty strings
-	// CALLS: deBru, eulerToPath, pathToGenome
+	// the graph is built with packed (k-1)-mers as integer nodes, so no strings are made until the end
+	// PRECONDTION: kmers contains no empty strings, all the same length, 1 < length <= 33
+	// CALLS: compactGraph.fromKmers, compactGraph.eulerPath, compactGraph.spell
 	public static String genomeReconstruction(String[] kmers) {
-		// create an adjacency list based on kmers
-		Map<String, ArrayList<String>> adjList = deBru(kmers);
-		// find a path through the kmers based on the adjacency list
-		ArrayList<String> path = eulerToPath(adjList);
-		// reconstruct the genome based on the path
-		return pathToGenome(path);
-	}
-
-	// convert a decimal number into a binary k-mer
-	// PRECONDITION: d > 0, k > 0, d as a binary number has <= k digits
-	public static String decimalToBinary(int d, int k) {
-		// initialize return variable
-		String b = "";
-		
-		// add 1s or 0s based on dividing by 2
-		while (d > 0) {
-			b = (d % 2) + b;
-			d /= 2;
-		}
-		
-		// fill extra space at the beginning with 0s
-		while (b.length() < k) b = "0" + b;
-		
-		return b;
+		// create a compact graph based on kmers
+		compactGraph graph = compactGraph.fromKmers(kmers);
+		// find a path through the graph, and reconstruct the genome based on it
+		return graph.spell(graph.eulerPath());
 	}
 	
-	// lists all binary k-mers
-	// PRECONDITION: k > 0
-	// CALLS: decimalToBinary
-	public static String[] allBinaryKmers(int k) {
-		// initialize return variable
-		String[] all = new String[(int) Math.pow(2, k)];
-		// add binary number corresponding to index for all of all
-		for (int i = 0; i < all.length; i++) all[i] = decimalToBinary(i, k);
-		
-		return all;
+	// reconstructs a long string given many k-mers, writing it to a file as the path is found
+	// returns the length of the string
+	// PRECONDTION: kmers contains no empty strings, all the same length, 1 < length <= 33,
+	//				filename is a valid location
+	// CALLS: compactGraph.fromKmers, compactGraph.writeGenome
+	public static long genomeReconstruction(String[] kmers, String filename) throws IOException {
+		return compactGraph.fromKmers(kmers).writeGenome(filename);
 	}
-	
+
 	// finds a cyclic binary string that contains all binary k-mers
-	// PRECONDTION: k > 0
-	// CALLS: deBru, eulerToCycle, pathToGenome
+	// PRECONDTION: 0 < k < 31
+	// CALLS: deBruijnSequence.sequence
 	public static String kUniversal(int k) {
-		// get all k-mers
-		String[] kmers = allBinaryKmers(k);
-		// create an adjacency list based on kmers
-		Map<String, ArrayList<String>> adjList = deBru(kmers);
-		// find a cycle based on the adjacency list
-		ArrayList<String> cycle = eulerToCycle(adjList);
-		// construct a k-universal string based on the cycle
-		String universe = pathToGenome(cycle);
-		// remove the last k-1 chars before returning
-		return universe.substring(0, universe.length() - k + 1);
+		return new deBruijnSequence("01", k).sequence(false);
+	}
+	
+	// writes a string that contains all k-mers over an alphabet to a file, without making any k-mers
+	// returns the length of the string
+	// PRECONDTION: alphabet has at least two distinct chars, k > 0, alphabet.length() ^ k < 2^63,
+	//				filename is a valid location
+	// CALLS: deBruijnSequence.write
+	public static long kUniversal(String alphabet, int k, boolean cyclic, String filename) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+			return new deBruijnSequence(alphabet, k).write(writer, !cyclic);
+		}
 	}
 	
 	// reads a file in as a string, getting rid of line breaks
@@ -0,0 +1,361 @@
+package reconstruction;
+
+// for spilling runs to temporary files and reading them back
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// for all kinds of lists
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * <h1>External-Memory K-mer Counter</h1>
+ * Counts the k-mers of read sets too big to hold in memory, then keeps only the ones seen often
+ * enough to trust (most k-mers seen once or twice are sequencing errors) and builds a
+ * <code>compactGraph</code> out of them.
+ * <br>
+ * Packed k-mers are collected in one buffer whose size is set by a memory budget. Whenever the
+ * buffer fills up, it's sorted on all cores, runs of equal k-mers are collapsed into counts, and the
+ * sorted (k-mer, count) pairs are spilled to a temporary file. Counting then merges all of the spilled
+ * runs at once through a priority queue, so only one pair per run is ever in memory, and adds up the
+ * counts of each k-mer as its copies come out of the runs together.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>read</strong>: one line of a file (lines starting with &gt; are FASTA headers and skipped)</li>
+ * 		<li><strong>packed k-mer</strong>: a k-mer stored two bits per base in a long, as
+ * 			<code>sequences.PackedDNA.encode</code> gives</li>
+ * 		<li><strong>run</strong>: a temporary file of distinct k-mers in sorted order, each with its count</li>
+ * 		<li><strong>solid k-mer</strong>: a k-mer seen at least some minimum number of times</li>
+ * </ul>
+ * Any char that isn't ACGT (upper or lower case) breaks a read, so no k-mer spans it.
+ * @author faith
+ */
+class kmerCounter implements Closeable {
+	/**
+	 * the smallest number of k-mers the buffer will hold, whatever the budget
+	 */
+	private static final int MIN_BUFFER = 1 << 10;
+	/**
+	 * how many bytes of a file or run to read or write at a time
+	 */
+	private static final int IO_BYTES = 1 << 16;
+
+	/**
+	 * the length of the k-mers
+	 */
+	private final int k;
+	/**
+	 * masks off everything but the last k bases
+	 */
+	private final long mask;
+	/**
+	 * where to write the runs
+	 */
+	private final Path tempDir;
+	/**
+	 * the most k-mers the buffer may hold before it's spilled
+	 */
+	private final int capacity;
+	/**
+	 * the k-mers collected since the last spill, which grows until it reaches capacity
+	 */
+	private long[] buffer = new long[MIN_BUFFER];
+	/**
+	 * how many k-mers are in the buffer
+	 */
+	private int size;
+	/**
+	 * the count of each distinct k-mer in the buffer, once it's been collapsed
+	 */
+	private int[] counts;
+	/**
+	 * the runs spilled so far
+	 */
+	private final ArrayList<Path> runs = new ArrayList<Path>();
+	/**
+	 * the last k bases read, and how many bases have been read since the last break
+	 */
+	private long kmer;
+	private int filled;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * precondition: 1 < k <= 32, tempDir is a directory that can be written to
+	 * @param k the length of the k-mers
+	 * @param budget about how many bytes of heap the k-mer buffer and its counts may use
+	 * @param tempDir where to write the runs
+	 */
+	public kmerCounter(int k, long budget, Path tempDir) {
+		// check for argument validity
+		if (k < 2 || k > 32)
+			throw new IllegalArgumentException("Can't pack " + k + "-mers into longs");
+
+		this.k = k;
+		this.mask = k == 32 ? -1L : (1L << (2 * k)) - 1;
+		this.tempDir = tempDir;
+		this.capacity = (int) Math.max(MIN_BUFFER, Math.min(Integer.MAX_VALUE - 8, budget / (Long.BYTES + Integer.BYTES)));
+	}
+
+	/**
+	 * <h1>Reads the next base</h1>
+	 * @param code the base's code, or -1 for a break
+	 * @throws IOException if the buffer fills and can't be spilled
+	 */
+	private void next(int code) throws IOException {
+		// anything that isn't a base breaks the read
+		if (code < 0) {
+			filled = 0;
+			return;
+		}
+
+		kmer = ((kmer << 2) | code) & mask;
+		if (++filled < k) return;
+
+		if (size == buffer.length) {
+			if (size < capacity) buffer = Arrays.copyOf(buffer, (int) Math.min(capacity, 2L * size));
+			else spill();
+		}
+		buffer[size++] = kmer;
+	}
+
+	/**
+	 * <h1>Counts the k-mers of one read</h1>
+	 * @param read a read
+	 * @throws IOException if the buffer fills and can't be spilled
+	 */
+	public void addRead(CharSequence read) throws IOException {
+		for (int i = 0; i < read.length(); i++) {
+			char base = read.charAt(i);
+			next(base < 256 ? graphBuilder.CODES[base] : -1);
+		}
+		filled = 0;
+	}
+
+	/**
+	 * <h1>Counts the k-mers of every read in a file</h1>
+	 * Streams through the file, so it can be any size. Line breaks end reads,
+	 * and lines starting with &gt; are skipped.
+	 * @param file a file with one read per line
+	 * @throws IOException if the file can't be read or the buffer can't be spilled
+	 */
+	public void addFile(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			byte[] bytes = new byte[IO_BYTES];
+			boolean header = false;
+			boolean lineStart = true;
+
+			for (int read = in.read(bytes); read >= 0; read = in.read(bytes)) {
+				for (int i = 0; i < read; i++) {
+					byte b = bytes[i];
+					if (b == '\n') {
+						header = false;
+						lineStart = true;
+						filled = 0;
+						continue;
+					}
+					if (lineStart && b == '>') header = true;
+					lineStart = false;
+
+					// carriage returns are just skipped, so Windows files work
+					if (!header && b != '\r') next(graphBuilder.CODES[b & 0xFF]);
+				}
+			}
+		}
+		filled = 0;
+	}
+
+	/**
+	 * <h1>Sorts the buffer and collapses it into counts</h1>
+	 * Writes each distinct k-mer's count into counts, and packs the
+	 * distinct k-mers to the front of the buffer.
+	 * @return how many distinct k-mers there are
+	 */
+	private int collapse() {
+		if (counts == null || counts.length < size) counts = new int[buffer.length];
+		Arrays.parallelSort(buffer, 0, size);
+
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (distinct > 0 && buffer[distinct - 1] == buffer[i]) counts[distinct - 1]++;
+			else {
+				buffer[distinct] = buffer[i];
+				counts[distinct++] = 1;
+			}
+		}
+
+		size = 0;
+		return distinct;
+	}
+
+	/**
+	 * <h1>Spills the buffer to a new run</h1>
+	 * Counts are stored as 4-byte ints after each 8-byte k-mer.
+	 * @throws IOException if the run can't be written
+	 */
+	private void spill() throws IOException {
+		int distinct = collapse();
+
+		Path run = Files.createTempFile(tempDir, "kmers", ".run");
+		runs.add(run);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), IO_BYTES))) {
+			for (int i = 0; i < distinct; i++) {
+				out.writeLong(buffer[i]);
+				out.writeInt(counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * <h1>Getter for the number of runs spilled so far</h1>
+	 * @return the number of temporary files written
+	 */
+	public int runCount() {
+		return runs.size();
+	}
+
+	/**
+	 * <h1>Finds every solid k-mer</h1>
+	 * If nothing has been spilled, just counts the buffer. Otherwise spills what's left and
+	 * merges all of the runs, deleting them afterwards.
+	 * <br>
+	 * precondition: the solid k-mers fit in an array
+	 * @param minCount how many times a k-mer must be seen to be kept
+	 * @return the solid k-mers, packed, in sorted order
+	 * @throws IOException if the runs can't be written or read
+	 */
+	public long[] solid(int minCount) throws IOException {
+		// initialize return variable
+		long[] solid = new long[16];
+		int count = 0;
+
+		// everything fits in memory, so there's no need to touch the disk
+		if (runs.isEmpty()) {
+			int distinct = collapse();
+			for (int i = 0; i < distinct; i++) {
+				if (counts[i] < minCount) continue;
+				if (count == solid.length) solid = Arrays.copyOf(solid, count * 2);
+				solid[count++] = buffer[i];
+			}
+			return Arrays.copyOf(solid, count);
+		}
+
+		if (size > 0) spill();
+
+		// open every run, and order them by the k-mer each is on
+		PriorityQueue<run> queue = new PriorityQueue<run>((a, b) -> Long.compare(a.kmer, b.kmer));
+		try {
+			for (Path path : runs) {
+				run r = new run(path);
+				if (r.advance()) queue.add(r);
+				else r.close();
+			}
+
+			// take the copies of the smallest k-mer out of every run that has it
+			while (!queue.isEmpty()) {
+				long current = queue.peek().kmer;
+				long total = 0;
+				while (!queue.isEmpty() && queue.peek().kmer == current) {
+					run r = queue.poll();
+					total += r.count;
+					if (r.advance()) queue.add(r);
+					else r.close();
+				}
+
+				if (total < minCount) continue;
+				if (count == solid.length) solid = Arrays.copyOf(solid, count * 2);
+				solid[count++] = current;
+			}
+		}
+		finally {
+			for (run r : queue) r.close();
+			close();
+		}
+
+		return Arrays.copyOf(solid, count);
+	}
+
+	/**
+	 * <h1>Builds a DeBrujin graph out of every solid k-mer</h1>
+	 * Each solid k-mer becomes one edge, however many times it was seen.
+	 * <br>
+	 * precondition: some k-mer is solid
+	 * <br>
+	 * calls: solid, compactGraph.fromPackedKmers
+	 * @param minCount how many times a k-mer must be seen to be kept
+	 * @return a DeBrujin graph
+	 * @throws IOException if the runs can't be written or read
+	 */
+	public compactGraph graph(int minCount) throws IOException {
+		long[] solid = solid(minCount);
+		if (solid.length == 0)
+			throw new IllegalArgumentException("No " + k + "-mers were seen " + minCount + " times");
+
+		return compactGraph.fromPackedKmers(solid, solid.length, k);
+	}
+
+	/**
+	 * <h1>Deletes every run</h1>
+	 * @throws IOException if a run can't be deleted
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Path run : runs) Files.deleteIfExists(run);
+		runs.clear();
+	}
+
+	/**
+	 * <h1>One run being merged</h1>
+	 * Holds the (k-mer, count) pair the run is on.
+	 */
+	private static class run implements Closeable {
+		/**
+		 * the open run
+		 */
+		private final DataInputStream in;
+		/**
+		 * the pair the run is on
+		 */
+		private long kmer;
+		private int count;
+
+		/**
+		 * <h1>Constructor</h1>
+		 * @param path the run's file
+		 * @throws IOException if the run can't be opened
+		 */
+		run(Path path) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BYTES));
+		}
+
+		/**
+		 * <h1>Moves to the next pair</h1>
+		 * @return whether there was another pair
+		 * @throws IOException if the run can't be read
+		 */
+		boolean advance() throws IOException {
+			try {
+				kmer = in.readLong();
+			}
+			catch (EOFException e) {
+				return false;
+			}
+			count = in.readInt();
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package reconstruction;
+
+// for growing arrays
+import java.util.Arrays;
+
+/**
+ * <h1>Node Index</h1>
+ * Hands out integer IDs to packed k-mers (or any other longs), in order of first appearance,
+ * using open addressing over primitive arrays instead of a <code>Map</code> of boxed keys.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>packed k-mer</strong>: a k-mer stored two bits per base in a long, as
+ * 			<code>sequences.PackedDNA.encode</code> gives</li>
+ * 		<li><strong>ID</strong>: the number of distinct keys added before a key was first added</li>
+ * </ul>
+ * @author faith
+ */
+class nodeIndex {
+	/**
+	 * marks a slot of the table with no key in it
+	 */
+	private static final int EMPTY = -1;
+
+	/**
+	 * the ID in each slot of the table
+	 */
+	private int[] slots;
+	/**
+	 * the key of each ID
+	 */
+	private long[] keys;
+	/**
+	 * the number of keys added
+	 */
+	private int size;
+	/**
+	 * how far to shift a hash to get a slot
+	 */
+	private int shift;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Makes a table big enough to hold some keys without growing.
+	 * <br>
+	 * precondition: expected >= 0
+	 * @param expected the number of keys expected
+	 */
+	public nodeIndex(int expected) {
+		// find the smallest power of two that keeps the table at most half full
+		int capacity = 16;
+		while (capacity < expected * 2L && capacity < 1 << 30) capacity <<= 1;
+
+		slots = new int[capacity];
+		Arrays.fill(slots, EMPTY);
+		keys = new long[Math.max(expected, 16)];
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+	}
+
+	/**
+	 * <h1>Finds the slot a key would start looking from</h1>
+	 * Multiplies by a large odd number and keeps the top bits, which spreads out
+	 * packed k-mers that differ only in their last few bases.
+	 * @param key the key to hash
+	 * @return the first slot to try
+	 */
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+
+	/**
+	 * <h1>Gets the ID of a key, adding it if it's new</h1>
+	 * Probes linearly from the key's slot until it finds the key or an empty slot.
+	 * @param key the key to look up
+	 * @return the key's ID
+	 */
+	public int add(long key) {
+		int mask = slots.length - 1;
+
+		// probe until the key or an empty slot turns up
+		for (int s = slot(key); ; s = (s + 1) & mask) {
+			int id = slots[s];
+			if (id == EMPTY) {
+				// give the key the next ID
+				if (size == keys.length) keys = Arrays.copyOf(keys, keys.length * 2);
+				keys[size] = key;
+				slots[s] = size;
+
+				// grow once the table is half full
+				if (++size * 2 > slots.length) grow();
+				return size - 1;
+			}
+			if (keys[id] == key) return id;
+		}
+	}
+
+	/**
+	 * <h1>Gets the ID of a key</h1>
+	 * Probes linearly from the key's slot until it finds the key or an empty slot.
+	 * @param key the key to look up
+	 * @return the key's ID, or -1 if it was never added
+	 */
+	public int get(long key) {
+		int mask = slots.length - 1;
+
+		for (int s = slot(key); ; s = (s + 1) & mask) {
+			int id = slots[s];
+			if (id == EMPTY) return -1;
+			if (keys[id] == key) return id;
+		}
+	}
+
+	/**
+	 * <h1>Doubles the table</h1>
+	 * Puts every ID back in the bigger table, in ID order.
+	 */
+	private void grow() {
+		slots = new int[slots.length * 2];
+		Arrays.fill(slots, EMPTY);
+		shift--;
+
+		int mask = slots.length - 1;
+		for (int id = 0; id < size; id++) {
+			int s = slot(keys[id]);
+			while (slots[s] != EMPTY) s = (s + 1) & mask;
+			slots[s] = id;
+		}
+	}
+
+	/**
+	 * <h1>Getter for the number of keys</h1>
+	 * @return the number of keys added
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * <h1>Getter for the key with an ID</h1>
+	 * precondition: 0 <= id < size
+	 * @param id the ID to look up
+	 * @return the key with that ID
+	 */
+	public long key(int id) {
+		return keys[id];
+	}
+
+	/**
+	 * <h1>Copies out all of the keys</h1>
+	 * @return the keys, indexed by ID
+	 */
+	public long[] keys() {
+		return Arrays.copyOf(keys, size);
+	}
+}
@@ -0,0 +1,235 @@
+package reconstruction;
+
+// for streaming adjacency lists to and from binary files
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// for sorting and growing arrays
+import java.util.Arrays;
+// for handing out blocks of reads to threads
+import java.util.stream.IntStream;
+
+/**
+ * <h1>Overlap Graph Builder</h1>
+ * Finds which reads overlap which without comparing every pair of reads. The reads are sorted once
+ * by their prefixes (on all cores) into an index, and then each read's suffix is binary-searched in
+ * that index; every read found there, other than the read itself, comes after it. That takes
+ * O(n log n) comparisons instead of O(n^2), and no substrings are ever made.
+ * <br>
+ * Adjacency lists can be written to a binary file as they're found, a block of reads at a time:
+ * the file holds the number of reads, then for every read with at least one read after it,
+ * the read's index, how many reads come after it, and their indices (all as 4-byte ints).
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>prefix</strong>: a string, excluding the last char</li>
+ * 		<li><strong>suffix</strong>: a string, excluding the first char</li>
+ * 		<li><strong>overlap</strong>: read b comes after read a if a's suffix is b's prefix</li>
+ * </ul>
+ * @author faith
+ */
+class overlapGraph {
+	/**
+	 * how many reads each thread handles at a time while writing
+	 */
+	private static final int BLOCK = 1 << 14;
+	/**
+	 * how many indices are insertion-sorted together before merging starts
+	 */
+	private static final int RUN = 32;
+
+	/**
+	 * the reads
+	 */
+	private final String[] reads;
+	/**
+	 * indices of the reads, sorted by prefix
+	 */
+	private final int[] byPrefix;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Sorts the reads' indices by prefix on all cores.
+	 * <br>
+	 * precondition: no read is empty
+	 * <br>
+	 * calls: sortByPrefix
+	 * @param reads the reads
+	 */
+	public overlapGraph(String[] reads) {
+		this.reads = reads;
+		byPrefix = sortByPrefix(reads);
+	}
+
+	/**
+	 * <h1>Sorts the reads' indices by prefix</h1>
+	 * A bottom-up merge sort on plain <code>int</code>s: short runs are insertion-sorted on all
+	 * cores, then each pass merges pairs of runs (also on all cores) into the other array, until
+	 * one run is left. Equal prefixes keep their reads in index order.
+	 * <br>
+	 * calls: compare
+	 * @param reads the reads
+	 * @return the indices of the reads, sorted by prefix
+	 */
+	private static int[] sortByPrefix(String[] reads) {
+		int n = reads.length;
+		int[] ids = new int[n], buffer = new int[n];
+		Arrays.setAll(ids, i -> i);
+
+		// insertion-sort each run
+		int[] first = ids;
+		IntStream.range(0, (n + RUN - 1) / RUN).parallel().forEach(r -> {
+			int from = r * RUN, to = Math.min(n, from + RUN);
+			for (int i = from + 1; i < to; i++) {
+				int id = first[i], j = i - 1;
+				for (; j >= from && compare(reads[first[j]], 0, reads[id], 0) > 0; j--) first[j + 1] = first[j];
+				first[j + 1] = id;
+			}
+		});
+
+		// merge pairs of runs, doubling their width each pass
+		for (long width = RUN; width < n; width *= 2) {
+			int[] from = ids, to = buffer;
+			int w = (int) width;
+			IntStream.range(0, (int) ((n + 2 * width - 1) / (2 * width))).parallel().forEach(pair -> {
+				int start = (int) Math.min(n, 2L * pair * w), mid = (int) Math.min(n, start + (long) w);
+				int end = (int) Math.min(n, start + 2L * w);
+
+				// take from the left run unless the right one is strictly first, to keep ties in order
+				int i = start, j = mid, k = start;
+				while (i < mid && j < end)
+					to[k++] = compare(reads[from[j]], 0, reads[from[i]], 0) < 0 ? from[j++] : from[i++];
+				while (i < mid) to[k++] = from[i++];
+				while (j < end) to[k++] = from[j++];
+			});
+
+			// the merged runs are read from in the next pass
+			ids = to;
+			buffer = from;
+		}
+
+		return ids;
+	}
+
+	/**
+	 * <h1>Compares two substrings that each run to one char before some string's end</h1>
+	 * Compares char by char, and then by length, like <code>String.compareTo</code>.
+	 * @param a the first string
+	 * @param aStart where the first substring starts (0 for a prefix, 1 for a suffix)
+	 * @param b the second string
+	 * @param bStart where the second substring starts
+	 * @return negative, zero, or positive as the first substring comes before, with, or after the second
+	 */
+	private static int compare(String a, int aStart, String b, int bStart) {
+		// a prefix stops one char early, a suffix runs to the end
+		int aEnd = aStart == 0 ? a.length() - 1 : a.length();
+		int bEnd = bStart == 0 ? b.length() - 1 : b.length();
+
+		for (int i = aStart, j = bStart; i < aEnd && j < bEnd; i++, j++) {
+			int diff = a.charAt(i) - b.charAt(j);
+			if (diff != 0) return diff;
+		}
+
+		return (aEnd - aStart) - (bEnd - bStart);
+	}
+
+	/**
+	 * <h1>Finds every read that comes after a read</h1>
+	 * Binary-searches for the first prefix that isn't before the read's suffix,
+	 * then takes reads until the prefixes stop matching.
+	 * @param read the index of a read
+	 * @return the indices of the reads that come after it, in prefix-sorted order
+	 */
+	public int[] after(int read) {
+		String text = reads[read];
+
+		// find the first prefix >= the suffix
+		int low = 0, high = byPrefix.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(reads[byPrefix[mid]], 0, text, 1) < 0) low = mid + 1;
+			else high = mid;
+		}
+
+		// take every read with a matching prefix, except this one
+		int[] after = new int[4];
+		int count = 0;
+		for (int i = low; i < byPrefix.length && compare(reads[byPrefix[i]], 0, text, 1) == 0; i++) {
+			if (byPrefix[i] == read) continue;
+			if (count == after.length) after = Arrays.copyOf(after, count * 2);
+			after[count++] = byPrefix[i];
+		}
+
+		return Arrays.copyOf(after, count);
+	}
+
+	/**
+	 * <h1>Writes the whole overlap graph to a binary file</h1>
+	 * Finds the reads after each read a block at a time, with the reads of a block spread over all
+	 * cores, and writes each block as soon as it's done, so only one block is ever held in memory.
+	 * @param file where to write the adjacency lists
+	 * @return the number of overlaps written
+	 * @throws IOException if file can't be written to
+	 */
+	public long writeAdjacency(Path file) throws IOException {
+		// initialize return variable
+		long overlaps = 0;
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(reads.length);
+
+			for (int start = 0; start < reads.length; start += BLOCK) {
+				int end = Math.min(reads.length, start + BLOCK);
+				int[][] block = new int[end - start][];
+				final int first = start;
+				IntStream.range(start, end).parallel().forEach(i -> block[i - first] = after(i));
+
+				for (int i = start; i < end; i++) {
+					int[] after = block[i - start];
+					if (after.length == 0) continue;
+
+					out.writeInt(i);
+					out.writeInt(after.length);
+					for (int j : after) out.writeInt(j);
+					overlaps += after.length;
+				}
+			}
+		}
+
+		return overlaps;
+	}
+
+	/**
+	 * <h1>Reads an overlap graph back from a binary file</h1>
+	 * @param file a file written by <code>writeAdjacency</code>
+	 * @return the indices of the reads after each read (empty for reads with none)
+	 * @throws IOException if file can't be read
+	 */
+	public static int[][] readAdjacency(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			// initialize return variable
+			int[][] adjacency = new int[in.readInt()][];
+			Arrays.fill(adjacency, new int[0]);
+
+			// keep reading lists until the file runs out
+			while (true) {
+				int read;
+				try {
+					read = in.readInt();
+				}
+				catch (EOFException e) {
+					return adjacency;
+				}
+
+				adjacency[read] = new int[in.readInt()];
+				for (int j = 0; j < adjacency[read].length; j++) adjacency[read][j] = in.readInt();
+			}
+		}
+	}
+}
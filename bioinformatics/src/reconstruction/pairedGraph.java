@@ -0,0 +1,334 @@
+package reconstruction;
+
+// for growing and sorting arrays
+import java.util.Arrays;
+
+// for packing k-mers into longs
+import sequences.PackedDNA;
+
+/**
+ * <h1>Paired DeBrujin Graph</h1>
+ * A DeBrujin graph of kd-mers, where every kd-mer is held as two packed k-mers and every node as two
+ * packed (k-1)-mers, so pairs are never split up or glued together as strings. The edges are stored
+ * compressed-sparse-row style, like <code>compactGraph</code>, with each node's edges sorted by target.
+ * <br>
+ * Not every eulerian path through a paired graph spells a genome, since the two halves of the pairs
+ * have to agree where they overlap. Rather than finding whole paths and checking them afterwards, the
+ * genome is found with a depth-first search over eulerian paths that checks each new base of the first
+ * k-mers against the base the second k-mers already put at that position, and backs up the moment they
+ * disagree. A wrong turn is caught within about k + d steps, so the search is close to linear.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>kd-mer</strong>: a pair of k-mers separated by d intermediate chars
+ * 			(ATAGTG has (2,1)-mers AT|GT and TA|TG)</li>
+ * 		<li><strong>packed k-mer</strong>: a k-mer stored two bits per base in a long, as
+ * 			<code>sequences.PackedDNA.encode</code> gives</li>
+ * 		<li><strong>node</strong>: the prefixes (or suffixes) of both k-mers of a kd-mer</li>
+ * </ul>
+ * @author faith
+ */
+public class pairedGraph {
+	/**
+	 * marks a slot of the node table with no node in it
+	 */
+	private static final int EMPTY = -1;
+	/**
+	 * how many times per edge a search may back up before the kd-mers are deemed too ambiguous
+	 */
+	private static final int BACKUPS_PER_EDGE = 64;
+
+	/**
+	 * the length of each k-mer, and the gap between the two in a pair
+	 */
+	private final int k, d;
+	/**
+	 * the two packed (k-1)-mers of each node
+	 */
+	private long[] firsts = new long[16], seconds = new long[16];
+	/**
+	 * the number of nodes
+	 */
+	private int nodes;
+	/**
+	 * the node in each slot of the table
+	 */
+	private int[] slots;
+	/**
+	 * how far to shift a hash to get a slot
+	 */
+	private int shift;
+	/**
+	 * where each node's edges start in targets (with one extra entry for the end)
+	 */
+	private int[] offsets;
+	/**
+	 * the node at the end of each edge, grouped by the node at the start
+	 */
+	private int[] targets;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Numbers the prefix and suffix node of every kd-mer, then lays out the edges.
+	 * <br>
+	 * precondition: 1 < k <= 32, d >= 0, count <= both arrays' lengths
+	 * @param first the packed first k-mer of each kd-mer
+	 * @param second the packed second k-mer of each kd-mer
+	 * @param count the number of kd-mers
+	 * @param k the length of each k-mer
+	 * @param d the gap between the k-mers
+	 */
+	public pairedGraph(long[] first, long[] second, int count, int k, int d) {
+		// check for argument validity
+		if (k < 2 || k > PackedDNA.MAX_K)
+			throw new IllegalArgumentException("Can't pack " + k + "-mers into longs");
+		if (d < 0)
+			throw new IllegalArgumentException("Can't have a gap of " + d);
+		if (count == 0)
+			throw new IllegalArgumentException("Can't build a graph out of no kd-mers");
+
+		this.k = k;
+		this.d = d;
+		slots = new int[Integer.highestOneBit(Math.max(8, count * 2 - 1)) << 1];
+		Arrays.fill(slots, EMPTY);
+		shift = 64 - Integer.numberOfTrailingZeros(slots.length);
+
+		// masks off everything but the last k - 1 bases
+		long mask = (1L << (2 * (k - 1))) - 1;
+		int[] from = new int[count];
+		int[] to = new int[count];
+		for (int e = 0; e < count; e++) {
+			from[e] = add(first[e] >>> 2, second[e] >>> 2);
+			to[e] = add(first[e] & mask, second[e] & mask);
+		}
+
+		// count the edges out of each node, and turn the counts into offsets
+		offsets = new int[nodes + 1];
+		for (int e = 0; e < count; e++) offsets[from[e] + 1]++;
+		for (int v = 0; v < nodes; v++) offsets[v + 1] += offsets[v];
+
+		// drop each edge into its block, then sort each block so identical edges sit together
+		targets = new int[count];
+		int[] next = Arrays.copyOf(offsets, nodes);
+		for (int e = 0; e < count; e++) targets[next[from[e]]++] = to[e];
+		for (int v = 0; v < nodes; v++) Arrays.sort(targets, offsets[v], offsets[v + 1]);
+	}
+
+	/**
+	 * <h1>Creates a paired DeBrujin graph given kd-mers</h1>
+	 * Packs the two halves of each kd-mer straight from the string.
+	 * <br>
+	 * precondition: all strings in kdmers are the same even length, with both k-mers written
+	 * next to each other (and any | taken out), 1 < k <= 32, only ACGT
+	 * @param kdmers an array of kd-mers
+	 * @param d the gap between the k-mers
+	 * @return a paired DeBrujin graph
+	 */
+	public static pairedGraph fromKdmers(String[] kdmers, int d) {
+		// check for argument validity
+		if (kdmers.length == 0)
+			throw new IllegalArgumentException("Can't build a graph out of no kd-mers");
+		int k = kdmers[0].length() / 2;
+
+		long[] first = new long[kdmers.length];
+		long[] second = new long[kdmers.length];
+		for (int e = 0; e < kdmers.length; e++) {
+			if (kdmers[e].length() != 2 * k)
+				throw new IllegalArgumentException("Can't mix " + k + "-mer pairs and " + kdmers[e].length() + "-long strings");
+			first[e] = PackedDNA.encode(kdmers[e].subSequence(0, k));
+			second[e] = PackedDNA.encode(kdmers[e].subSequence(k, 2 * k));
+		}
+
+		return new pairedGraph(first, second, kdmers.length, k, d);
+	}
+
+	/**
+	 * <h1>Finds the slot a node would start looking from</h1>
+	 * @param first the node's first packed (k-1)-mer
+	 * @param second the node's second packed (k-1)-mer
+	 * @return the first slot to try
+	 */
+	private int slot(long first, long second) {
+		return (int) (((first * 0x9E3779B97F4A7C15L) ^ second) * 0xBF58476D1CE4E5B9L >>> shift);
+	}
+
+	/**
+	 * <h1>Gets the ID of a node, adding it if it's new</h1>
+	 * Probes linearly from the node's slot, and doubles the table once it's half full.
+	 * @param first the node's first packed (k-1)-mer
+	 * @param second the node's second packed (k-1)-mer
+	 * @return the node's ID
+	 */
+	private int add(long first, long second) {
+		int mask = slots.length - 1;
+
+		for (int s = slot(first, second); ; s = (s + 1) & mask) {
+			int id = slots[s];
+			if (id == EMPTY) {
+				// give the node the next ID
+				if (nodes == firsts.length) {
+					firsts = Arrays.copyOf(firsts, nodes * 2);
+					seconds = Arrays.copyOf(seconds, nodes * 2);
+				}
+				firsts[nodes] = first;
+				seconds[nodes] = second;
+				slots[s] = nodes;
+
+				if (++nodes * 2 > slots.length) grow();
+				return nodes - 1;
+			}
+			if (firsts[id] == first && seconds[id] == second) return id;
+		}
+	}
+
+	/**
+	 * <h1>Doubles the node table</h1>
+	 */
+	private void grow() {
+		slots = new int[slots.length * 2];
+		Arrays.fill(slots, EMPTY);
+		shift--;
+
+		int mask = slots.length - 1;
+		for (int id = 0; id < nodes; id++) {
+			int s = slot(firsts[id], seconds[id]);
+			while (slots[s] != EMPTY) s = (s + 1) & mask;
+			slots[s] = id;
+		}
+	}
+
+	/**
+	 * <h1>Getter for the number of nodes</h1>
+	 * @return the number of nodes
+	 */
+	public int nodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * <h1>Getter for the number of edges</h1>
+	 * @return the number of kd-mers
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * <h1>Reconstructs the genome the kd-mers came from</h1>
+	 * Starts at the node with one more outgoing than incoming edge, or tries every node with
+	 * edges if the graph is balanced, and searches for an eulerian path whose two halves agree.
+	 * <br>
+	 * precondition: the kd-mers are the complete composition of some genome, with at least d + 1 of them
+	 * @return the genome
+	 * @throws IllegalArgumentException if no eulerian path spells a genome, or the repeats are so much
+	 * longer than k + d that the search had to back up more than 64 times per kd-mer
+	 */
+	public String reconstruct() {
+		int edges = targets.length;
+		if (edges < d + 1)
+			throw new IllegalArgumentException("Can't fill a gap of " + d + " with " + edges + " kd-mers");
+
+		// find the start, or every possible start of a cycle
+		int[] in = new int[nodes];
+		for (int target : targets) in[target]++;
+		int start = -1;
+		for (int v = 0; v < nodes && start < 0; v++) if (offsets[v + 1] - offsets[v] - in[v] == 1) start = v;
+
+		if (start >= 0) {
+			String genome = search(start);
+			if (genome != null) return genome;
+		}
+		else {
+			for (int v = 0; v < nodes; v++) {
+				if (offsets[v + 1] == offsets[v]) continue;
+				String genome = search(v);
+				if (genome != null) return genome;
+			}
+		}
+
+		throw new IllegalArgumentException("No eulerian path spells a genome with these kd-mers");
+	}
+
+	/**
+	 * <h1>Searches for an eulerian path from a node whose two halves agree</h1>
+	 * At each step, takes the next unused edge out of the current node whose new first-k-mer base
+	 * matches what the second k-mers already spelled at that position; if there is none, backs up
+	 * one step and tries that node's next edge instead. Of several unused edges to the same node,
+	 * only the first is ever tried, since the others would lead to the same places.
+	 * <br>
+	 * Step i takes edge i, which adds the base at position i + k - 1 to the genome as seen by the
+	 * first k-mers, and the base at i + 2k + d - 1 as seen by the second k-mers.
+	 * @param start the node to start at
+	 * @return the genome, or null if no path from start works
+	 */
+	private String search(int start) {
+		int edges = targets.length;
+		int gap = k + d;
+		// the genome's length, and its bases as seen by each half of the pairs
+		int length = edges + 2 * k + d - 1;
+		byte[] seenFirst = new byte[length], seenSecond = new byte[length];
+
+		// write out the start node
+		for (int i = 0; i < k - 1; i++) {
+			seenFirst[i] = (byte) ((firsts[start] >>> (2 * (k - 2 - i))) & 3);
+			seenSecond[gap + i] = (byte) ((seconds[start] >>> (2 * (k - 2 - i))) & 3);
+		}
+
+		boolean[] used = new boolean[edges];
+		// the edge taken at each step, and the next edge to try at each step
+		int[] taken = new int[edges];
+		int[] cursor = new int[edges + 1];
+		int[] path = new int[edges + 1];
+		path[0] = start;
+		cursor[0] = offsets[start];
+		int step = 0;
+		long backups = 0;
+
+		while (step < edges) {
+			int v = path[step];
+			int position = step + k - 1;
+			int chosen = -1;
+
+			for (int e = cursor[step]; e < offsets[v + 1]; e++) {
+				// skip used edges, and unused copies of an edge already passed over
+				if (used[e] || (e > offsets[v] && targets[e - 1] == targets[e] && !used[e - 1])) continue;
+
+				// the new first-k-mer base has to agree with the second k-mers, once they've reached it
+				int base = (int) (firsts[targets[e]] & 3);
+				if (position >= gap && seenSecond[position] != base) continue;
+
+				chosen = e;
+				break;
+			}
+
+			if (chosen < 0) {
+				// back up, unless there is nowhere to back up to
+				if (step == 0) return null;
+				if (++backups > (long) BACKUPS_PER_EDGE * edges)
+					throw new IllegalArgumentException("Repeats in these kd-mers are too long to resolve with k = "
+							+ k + " and d = " + d);
+				step--;
+				used[taken[step]] = false;
+				continue;
+			}
+
+			// take the edge and write down the bases it adds
+			cursor[step] = chosen + 1;
+			used[chosen] = true;
+			taken[step] = chosen;
+			int next = targets[chosen];
+			seenFirst[position] = (byte) (firsts[next] & 3);
+			seenSecond[step + 2 * k + d - 1] = (byte) (seconds[next] & 3);
+
+			path[++step] = next;
+			cursor[step] = offsets[next];
+		}
+
+		// the first k-mers spell the genome up to where they stop, and the second k-mers the rest
+		char[] genome = new char[length];
+		int firstEnd = edges + k - 1;
+		for (int i = 0; i < length; i++) genome[i] = PackedDNA.decode(i < firstEnd ? seenFirst[i] : seenSecond[i]);
+
+		return new String(genome);
+	}
+}
@@ -11,7 +11,6 @@ import java.nio.file.Paths;
 
 // for all kinds of lists
 import java.util.*;
-import java.util.Map.Entry;
 
 // general PRECONDTION for all methods: strings only contain ACGT in various combinations
 // k-mer: string of length k
@@ -23,10 +22,8 @@ class prep {
 		// initialize return variable (String array with proper length)
 		String[] kmers = new String[text.length() - k + 1];
 		
-		// loop over each k-mer in text
-		for (int i = 0; i <= text.length() - k; i++)
-			// add k-mer to array
-			kmers[i] = text.substring(i, i + k);
+		// pull out each k-mer in text, spread over all cores
+		Arrays.parallelSetAll(kmers, i -> text.substring(i, i + k));
 		
 		return kmers;
 	}
@@ -43,71 +40,30 @@ class prep {
 		return genome;
 	}
 	
-	// sorts an array of strings from a start index using insertion sort
-	// PRECONDITION: arr contains no empty strings
-	public static void sortStrings(String[] arr, int start) {
-		// used as placeholders in the loop
-		int check;
-		String cur;
-		
-		// loop through elements from index 1
-		for (int i = 1; i < arr.length; i++) {
-			// save value at this index
-			cur = arr[i];
-			// the index that is being checked against starts as one before
-			check = i - 1;
-			
-			// while check is in the array, and the element at check's start-specified substring
-			// comes after cur's
-			while (check >= 0 && cur.substring(start).compareTo(arr[check].substring(start)) < 0)
-				// move the index being check backwards
-				check--;
-			
-			// move elements up between i & check
-			for (int j = i - 1; j > check; j--) arr[j + 1] = arr[j];
-			// place cur in proper spot
-			arr[check + 1] = cur;
-		}
-	}
-	
 	// creates an adjacency list between k-mers in an array
 	// adjacency list: map with key related to a bunch of strings that could come after in a genome
+	// the k-mers are sorted by prefix once, and each suffix is binary-searched among them,
+	// instead of checking every pair of k-mers
 	// PRECONDITION: kmers contains no empty strings
-	// CALLS: sortStrings
+	// CALLS: overlapGraph.after
 	public static Map<String, ArrayList<String>> overlap(String[] kmers) {
 		// initialize return variable
 		Map<String, ArrayList<String>> overlap = new LinkedHashMap<String, ArrayList<String>>();
+		overlapGraph graph = new overlapGraph(kmers);
 		
-		// used to track situation during the loop
-		String prefix, suffix;
 		// loop through all strings in kmers as possible keys
-		for (String key : kmers) {
-			// add this key to the adjacency list
-			overlap.put(key, new ArrayList<String>());
-			// save its suffix
-			suffix = key.substring(1);
+		for (int i = 0; i < kmers.length; i++) {
+			// find every k-mer whose prefix is this one's suffix
+			int[] after = graph.after(i);
+			ArrayList<String> values = new ArrayList<String>(after.length);
+			for (int j : after) values.add(kmers[j]);
 			
-			// loop through all strings in kmers as possible values
-			for (String value : kmers) {
-				// save its prefix
-				prefix = value.substring(0, value.length() - 1);
-				
-				// if value could come after the key (prefix = suffix)
-				// and the key and value are not the same string
-				if (key != value && prefix.equals(suffix))
-					// add this value to the key's value's arraylist
-					overlap.get(key).add(value);
+			// only keys with values are kept
+			if (!values.isEmpty()) {
+				Collections.sort(values);
+				overlap.put(kmers[i], values);
 			}
 		}
-		
-		// initialize an iterator for the adjacency list
-	    Iterator<Entry<String, ArrayList<String>>> iterator = overlap.entrySet().iterator();
-
-	    // loop through the iterator, removing keys if they have no values
-	    while (iterator.hasNext()) if (iterator.next().getValue().size() == 0) iterator.remove();
-	    
-	    // sort the arraylists of the values
-	    for (ArrayList<String> value : overlap.values()) Collections.sort(value);
 	    
 		return overlap;
 	}
@@ -0,0 +1,296 @@
+package reconstruction;
+
+// for writing unitigs to files
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+
+// for marking used edges and growing arrays
+import java.util.Arrays;
+import java.util.BitSet;
+
+// for storing unitigs two bits per base
+import sequences.PackedDNA;
+
+/**
+ * <h1>Compacted DeBrujin Graph</h1>
+ * The unitigs of a <code>compactGraph</code>, and how they connect, so later steps (like
+ * resolving repeats) can work on a few long strings instead of millions of (k-1)-mers.
+ * <br>
+ * The unitigs are found in one pass over the graph's edges: every edge out of a node that isn't
+ * in-and-out starts a unitig, which runs through in-and-out nodes until it reaches one that isn't.
+ * Each edge used is marked in a bitset, so any edge left unmarked afterwards must be on an isolated
+ * cycle of in-and-out nodes, which becomes a unitig of its own.
+ * <br>
+ * Some important terms:
+ * <ul>
+ * 		<li><strong>in-and-out node</strong>: a node that has one incoming and one outgoing edge</li>
+ * 		<li><strong>unitig</strong>: the string spelled by a maximal non-branching path, which is
+ * 			the same as a contig</li>
+ * 		<li><strong>junction</strong>: a node that isn't in-and-out, where unitigs begin and end</li>
+ * 		<li><strong>successor</strong>: a unitig that begins at the junction another unitig ends at
+ * 			(an isolated cycle is its own only successor)</li>
+ * </ul>
+ * @author faith
+ */
+public class unitigGraph {
+	/**
+	 * the number of bases in each node of the original graph
+	 */
+	private final int nodeLength;
+	/**
+	 * every unitig's bases, end to end
+	 */
+	private final PackedDNA bases = new PackedDNA();
+	/**
+	 * where each unitig starts in bases (with one extra entry for the end)
+	 */
+	private int[] starts = new int[16];
+	/**
+	 * the node IDs that each unitig begins and ends at
+	 */
+	private int[] firstNode = new int[16], lastNode = new int[16];
+	/**
+	 * the unitigs beginning at junction v are numbered junctionStarts[v] to junctionStarts[v + 1] - 1
+	 */
+	private final int[] junctionStarts;
+	/**
+	 * how many edges come into each node of the original graph
+	 */
+	private final int[] nodeInDegree;
+	/**
+	 * the number of unitigs, and how many of them are not isolated cycles
+	 */
+	private int count, pathCount;
+
+	/**
+	 * <h1>Constructor</h1>
+	 * Makes space for the unitigs of a graph, then finds them.
+	 * @param graph the graph to compact
+	 */
+	private unitigGraph(compactGraph graph) {
+		this.nodeLength = graph.nodeLength();
+		int nodes = graph.nodeCount();
+		this.junctionStarts = new int[nodes + 1];
+		this.nodeInDegree = new int[nodes];
+		for (int v = 0; v < nodes; v++) nodeInDegree[v] = graph.inDegree(v);
+
+		findUnitigs(graph);
+	}
+
+	/**
+	 * <h1>Compacts a graph into its unitigs</h1>
+	 * @param graph a DeBrujin graph
+	 * @return the compacted graph
+	 */
+	public static unitigGraph compact(compactGraph graph) {
+		return new unitigGraph(graph);
+	}
+
+	/**
+	 * <h1>Finds every unitig</h1>
+	 * Walks from every edge out of every junction, marking edges as it goes, then walks
+	 * around whatever cycles the unmarked edges are left on.
+	 * @param graph the graph to compact
+	 */
+	private void findUnitigs(compactGraph graph) {
+		int nodes = graph.nodeCount();
+		BitSet used = new BitSet(graph.edgeCount());
+		starts[0] = 0;
+
+		// every edge out of a junction starts a unitig
+		for (int v = 0; v < nodes; v++) {
+			junctionStarts[v] = count;
+			if (isInAndOut(graph, v)) continue;
+
+			for (int e = graph.edgeStart(v); e < graph.edgeStart(v + 1); e++) {
+				begin(graph, v);
+				int last = follow(graph, e, used);
+				finish(v, last);
+			}
+		}
+		junctionStarts[nodes] = count;
+		pathCount = count;
+
+		// any unused edge is on an isolated cycle, which starts and ends at the edge's node
+		for (int v = 0; v < nodes; v++) {
+			int e = graph.edgeStart(v);
+			if (!isInAndOut(graph, v) || used.get(e)) continue;
+
+			begin(graph, v);
+			follow(graph, e, used);
+			finish(v, v);
+		}
+	}
+
+	/**
+	 * <h1>Checks if a node is in-and-out</h1>
+	 * @param graph the graph
+	 * @param node a node ID
+	 * @return whether the node has exactly one incoming and one outgoing edge
+	 */
+	private static boolean isInAndOut(compactGraph graph, int node) {
+		return graph.inDegree(node) == 1 && graph.outDegree(node) == 1;
+	}
+
+	/**
+	 * <h1>Starts a unitig at a node</h1>
+	 * Writes out all of the node's bases.
+	 * @param graph the graph
+	 * @param node the node to start at
+	 */
+	private void begin(compactGraph graph, int node) {
+		long packed = graph.node(node);
+		for (int i = nodeLength - 1; i >= 0; i--) bases.appendCode((int) (packed >>> (2 * i)));
+	}
+
+	/**
+	 * <h1>Extends a unitig down an edge</h1>
+	 * Adds the last base of each node reached, and keeps going through in-and-out nodes
+	 * until it reaches a junction or comes back to an edge already used.
+	 * @param graph the graph
+	 * @param edge the first edge to take
+	 * @param used which edges have been taken already
+	 * @return the ID of the node the unitig ends at
+	 */
+	private int follow(compactGraph graph, int edge, BitSet used) {
+		while (true) {
+			used.set(edge);
+			int next = graph.edgeTarget(edge);
+			bases.appendCode((int) graph.node(next));
+
+			// stop at a junction, or after coming back around a cycle
+			if (!isInAndOut(graph, next)) return next;
+			edge = graph.edgeStart(next);
+			if (used.get(edge)) return next;
+		}
+	}
+
+	/**
+	 * <h1>Ends the unitig being built</h1>
+	 * @param first the node it began at
+	 * @param last the node it ends at
+	 */
+	private void finish(int first, int last) {
+		// grow the per-unitig arrays if they are full
+		if (count + 1 == starts.length) {
+			starts = Arrays.copyOf(starts, starts.length * 2);
+			firstNode = Arrays.copyOf(firstNode, starts.length);
+			lastNode = Arrays.copyOf(lastNode, starts.length);
+		}
+
+		firstNode[count] = first;
+		lastNode[count] = last;
+		starts[++count] = bases.length();
+	}
+
+	/**
+	 * <h1>Getter for the number of unitigs</h1>
+	 * @return the number of unitigs
+	 */
+	public int unitigCount() {
+		return count;
+	}
+
+	/**
+	 * <h1>Checks if a unitig is an isolated cycle</h1>
+	 * precondition: 0 <= unitig < unitigCount
+	 * @param unitig a unitig number
+	 * @return whether the unitig has no junctions at all
+	 */
+	public boolean isCycle(int unitig) {
+		return unitig >= pathCount;
+	}
+
+	/**
+	 * <h1>Getter for how many bases a unitig has</h1>
+	 * precondition: 0 <= unitig < unitigCount
+	 * @param unitig a unitig number
+	 * @return the unitig's length
+	 */
+	public int length(int unitig) {
+		return starts[unitig + 1] - starts[unitig];
+	}
+
+	/**
+	 * <h1>Getter for a unitig's bases</h1>
+	 * precondition: 0 <= unitig < unitigCount
+	 * @param unitig a unitig number
+	 * @return the unitig's string (a cycle ends with the (k-1)-mer it began with)
+	 */
+	public String sequence(int unitig) {
+		char[] sequence = new char[length(unitig)];
+		for (int i = 0; i < sequence.length; i++) sequence[i] = bases.charAt(starts[unitig] + i);
+
+		return new String(sequence);
+	}
+
+	/**
+	 * <h1>Getter for the node a unitig begins at</h1>
+	 * precondition: 0 <= unitig < unitigCount
+	 * @param unitig a unitig number
+	 * @return the ID of its first node in the original graph
+	 */
+	public int firstNode(int unitig) {
+		return firstNode[unitig];
+	}
+
+	/**
+	 * <h1>Getter for the node a unitig ends at</h1>
+	 * precondition: 0 <= unitig < unitigCount
+	 * @param unitig a unitig number
+	 * @return the ID of its last node in the original graph
+	 */
+	public int lastNode(int unitig) {
+		return lastNode[unitig];
+	}
+
+	/**
+	 * <h1>Getter for how many unitigs follow a unitig</h1>
+	 * precondition: 0 <= unitig < unitigCount
+	 * @param unitig a unitig number
+	 * @return the number of successors
+	 */
+	public int outDegree(int unitig) {
+		if (isCycle(unitig)) return 1;
+		return junctionStarts[lastNode[unitig] + 1] - junctionStarts[lastNode[unitig]];
+	}
+
+	/**
+	 * <h1>Getter for one of the unitigs that follow a unitig</h1>
+	 * precondition: 0 <= unitig < unitigCount, 0 <= which < outDegree(unitig)
+	 * @param unitig a unitig number
+	 * @param which which successor
+	 * @return the successor's unitig number
+	 */
+	public int successor(int unitig, int which) {
+		if (isCycle(unitig)) return unitig;
+		return junctionStarts[lastNode[unitig]] + which;
+	}
+
+	/**
+	 * <h1>Getter for how many unitigs lead into a unitig</h1>
+	 * precondition: 0 <= unitig < unitigCount
+	 * @param unitig a unitig number
+	 * @return the number of unitigs ending where this one begins
+	 */
+	public int inDegree(int unitig) {
+		if (isCycle(unitig)) return 1;
+		return nodeInDegree[firstNode[unitig]];
+	}
+
+	/**
+	 * <h1>Writes every unitig to a file</h1>
+	 * Writes each unitig's bases straight out of the packed array, one unitig per line.
+	 * @param filename the path/name of the file to write to
+	 * @throws IOException if filename is not valid
+	 */
+	public void writeUnitigs(String filename) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+			for (int u = 0; u < count; u++) {
+				for (int i = starts[u]; i < starts[u + 1]; i++) writer.write(bases.charAt(i));
+				writer.write('\n');
+			}
+		}
+	}
+}
@@ -13,6 +13,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 
+// for genomes packed 2 bits per base
+import sequences.PackedDNA;
+// for counting packed k-mers without boxing
+import kmers.KmerCounter;
+
 public class Genomes {	
 	/**
 	 * <h1>Converts a sequence of blocks to ordered nodes</h1>
@@ -459,6 +464,43 @@ public class Genomes {
 		return count;
 	}
 	
+	/**
+	 * <h1>Counts the number of matching k-mers (plus reverse complements) in two packed genomes</h1>
+	 * Same count as the string version, but k-mers are packed longs pulled out with a shift and
+	 * mask, so no substrings are made. Only one's forward k-mers are counted, in a primitive
+	 * <code>KmerCounter</code>; each k-mer in two then looks up both itself and its reverse
+	 * complement (once, if they are the same).
+	 * <br>
+	 * calls: KmerCounter.countAll, KmerCounter.count
+	 * @param one the first genome
+	 * @param two the second genome
+	 * @param k the length of k-mers to compare (at most 32)
+	 * @return the matching k-mers/reverse-complement-kmers that match
+	 */
+	public static int countKmerMatches(PackedDNA one, PackedDNA two, int k) {
+		// check for argument validity
+		if (k <= 0 || k > PackedDNA.MAX_K)
+			throw new IllegalArgumentException("Can't compare packed " + k + "-mers");
+		
+		// initialize return variable
+		int count = 0;
+		// count all k-mers in one
+		KmerCounter oneKmers = new KmerCounter(k).countAll(one);
+		
+		// loop over all k-mers in two
+		for (int i = 0; i <= two.length() - k; i++) {
+			// save the current k-mer and its reverse complement
+			long kmer = two.kmer(i, k);
+			long rc = PackedDNA.reverseComplement(kmer, k);
+			
+			// add the number of times each appeared in one
+			count += oneKmers.count(kmer);
+			if (rc != kmer) count += oneKmers.count(rc);
+		}
+		
+		return count;
+	}
+	
 	/**
 	 * <h1>Reads a file into a string</h1>
 	 * Tries to access the file to read, returns if possible
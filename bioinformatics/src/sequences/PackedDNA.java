@@ -0,0 +1,353 @@
+package sequences;
+
+import java.util.Arrays;
+
+/**
+ * A DNA string stored two bits per base in an array of longs
+ * <br>
+ * Public methods:
+ * <ul>
+ * 	<li>convert between bases and their 2-bit codes</li>
+ * 	<li>build up a sequence base-by-base or from a string</li>
+ * 	<li>grab a single base, or a k-mer (k &lt;= 32) as a 2-bit-packed number</li>
+ * 	<li>count how many of a base appear before an index (rank)</li>
+ * 	<li>copy out a slice or the reverse complement of the sequence</li>
+ * </ul>
+ * Definitions/abbreviations:
+ * <ul>
+ * 	<li><strong>Code:</strong> the 2-bit number for a base, A=0, C=1, G=2, T=3,
+ * 		so the complement of a code is 3 - code</li>
+ * 	<li><strong>Packed k-mer:</strong> the codes of a k-mer concatenated with the
+ * 		first base most significant, which is the same number that
+ * 		kmers.FrequencyArray.patternToNumber gives</li>
+ * </ul>
+ * Bases are stored 32 to a word, with the first base of each word in the two
+ * most significant bits, so a k-mer can be pulled out with a couple of shifts.
+ * @author faith
+ */
+public class PackedDNA {
+	/**
+	 * the acceptable characters in a DNA string, indexed by their codes
+	 */
+	public static final char[] BASES = {'A', 'C', 'G', 'T'};
+	/**
+	 * the most bases that fit in a packed k-mer
+	 */
+	public static final int MAX_K = 32;
+
+	/**
+	 * the packed bases
+	 */
+	private long[] words;
+	/**
+	 * the number of bases stored
+	 */
+	private int length;
+
+	/**
+	 * Constructor for an empty sequence.
+	 */
+	public PackedDNA() {
+		this(MAX_K);
+	}
+
+	/**
+	 * Constructor for an empty sequence with some space already set aside.
+	 * @param capacity the number of bases to make room for
+	 */
+	public PackedDNA(int capacity) {
+		// check for argument validity
+		if (capacity < 0)
+			throw new IllegalArgumentException("Can't make room for " + capacity + " bases");
+
+		words = new long[Math.max(1, (capacity + MAX_K - 1) / MAX_K)];
+		length = 0;
+	}
+
+	/**
+	 * Constructor which packs a DNA string, skipping line breaks.
+	 * @param dna the string to pack
+	 */
+	public PackedDNA(CharSequence dna) {
+		this(dna == null ? 0 : dna.length());
+		// check for argument validity
+		if (dna == null)
+			throw new IllegalArgumentException("Can't pack a null string");
+
+		// add in each char, ignoring any line breaks left over from a file
+		for (int i = 0; i < dna.length(); ++i) {
+			char c = dna.charAt(i);
+			if (c != '\n' && c != '\r') append(c);
+		}
+	}
+
+	/**
+	 * Converts a base to its code.
+	 * @param base the base (upper or lower case) to convert
+	 * @return the 2-bit code of the base
+	 */
+	public static int encode(char base) {
+		switch (base) {
+		case 'A': case 'a': return 0;
+		case 'C': case 'c': return 1;
+		case 'G': case 'g': return 2;
+		case 'T': case 't': return 3;
+		default:
+			throw new IllegalArgumentException("Requires ACGT DNA sequences, not '" + base + "'");
+		}
+	}
+
+	/**
+	 * Converts a code to its base.
+	 * @param code the 2-bit code to convert
+	 * @return the upper case base
+	 */
+	public static char decode(int code) {
+		return BASES[code & 3];
+	}
+
+	/**
+	 * Converts a DNA string (length &lt;= 32) to a packed k-mer.
+	 * @param kmer the string to convert
+	 * @return the packed k-mer
+	 */
+	public static long encode(CharSequence kmer) {
+		// check for argument validity
+		if (kmer.length() > MAX_K)
+			throw new IllegalArgumentException("Can't pack a " + kmer.length() + "-mer into a long");
+
+		// initialize return variable
+		long packed = 0;
+		// shift each base's code in from the right
+		for (int i = 0; i < kmer.length(); ++i) packed = (packed << 2) | encode(kmer.charAt(i));
+
+		return packed;
+	}
+
+	/**
+	 * Converts a packed k-mer back to a DNA string.
+	 * @param packed the packed k-mer
+	 * @param k the length of the k-mer
+	 * @return the k-mer as a string
+	 */
+	public static String decode(long packed, int k) {
+		// check for argument validity
+		if (k < 0 || k > MAX_K)
+			throw new IllegalArgumentException("Can't unpack a " + k + "-mer from a long");
+
+		// build up a char array from the back
+		char[] kmer = new char[k];
+		for (int i = k - 1; i >= 0; --i, packed >>>= 2) kmer[i] = decode((int) packed);
+
+		return new String(kmer);
+	}
+
+	/**
+	 * Finds the reverse complement of a packed k-mer.
+	 * @param packed the packed k-mer
+	 * @param k the length of the k-mer
+	 * @return the packed reverse complement
+	 */
+	public static long reverseComplement(long packed, int k) {
+		// initialize return variable
+		long rc = 0;
+		// pull codes off the back, complement them, and push them on the back of rc
+		for (int i = 0; i < k; ++i, packed >>>= 2) rc = (rc << 2) | (3 - (packed & 3));
+
+		return rc;
+	}
+
+	/**
+	 * Adds a base to the end of this sequence.
+	 * @param base the base to add
+	 */
+	public void append(char base) {
+		appendCode(encode(base));
+	}
+
+	/**
+	 * Adds a base to the end of this sequence.
+	 * @param code the 2-bit code of the base to add
+	 */
+	public void appendCode(int code) {
+		// double the space if it is all used up
+		if (length == words.length * MAX_K) words = Arrays.copyOf(words, words.length * 2);
+
+		words[length / MAX_K] |= (long) (code & 3) << shift(length);
+		++length;
+	}
+
+	/**
+	 * Getter for length.
+	 * @return the number of bases in this sequence
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Grabs the code of a base.
+	 * @param index the index of the base
+	 * @return the 2-bit code of the base
+	 */
+	public int codeAt(int index) {
+		// check for argument validity
+		if (index < 0 || index >= length)
+			throw new StringIndexOutOfBoundsException("Cannot use index " + index
+					+ " in a " + length + "-length sequence");
+
+		return (int) (words[index / MAX_K] >>> shift(index)) & 3;
+	}
+
+	/**
+	 * Grabs a base.
+	 * @param index the index of the base
+	 * @return the base as an upper case char
+	 */
+	public char charAt(int index) {
+		return decode(codeAt(index));
+	}
+
+	/**
+	 * Grabs a k-mer as a packed number with a couple of shifts.
+	 * @param start the index of the first base of the k-mer
+	 * @param k the length of the k-mer (&lt;= 32)
+	 * @return the packed k-mer
+	 */
+	public long kmer(int start, int k) {
+		// check for argument validity
+		if (k < 0 || k > MAX_K)
+			throw new IllegalArgumentException("Can't pack a " + k + "-mer into a long");
+		if (start < 0 || start + k > length)
+			throw new StringIndexOutOfBoundsException("Cannot grab a " + k + "-mer at index "
+					+ start + " in a " + length + "-length sequence");
+		if (k == 0) return 0;
+
+		// the word the k-mer starts in, and how far into it
+		int word = start / MAX_K;
+		int offset = (start % MAX_K) * 2;
+
+		// line up the k-mer's first base with the top of a long
+		long bits = words[word] << offset;
+		// pull in the rest from the next word if the k-mer spills over
+		if (offset != 0 && offset + 2 * k > 64) bits |= words[word + 1] >>> (64 - offset);
+
+		// shift down so the last base is at the bottom
+		return bits >>> (64 - 2 * k);
+	}
+
+	/**
+	 * Counts how many times a base appears before an index.
+	 * @param code the 2-bit code of the base to count
+	 * @param end the index to stop before
+	 * @return the number of times the base appears in [0, end)
+	 */
+	public int rank(int code, int end) {
+		// check for argument validity
+		if (end < 0 || end > length)
+			throw new StringIndexOutOfBoundsException("Cannot rank up to index " + end
+					+ " in a " + length + "-length sequence");
+
+		// initialize return variable
+		int rank = 0;
+		// a word full of this base, so that matching bases XOR to 00
+		long pattern = (code & 3) * 0x5555555555555555L;
+
+		// loop over all words that have something before end
+		for (int i = 0; i * MAX_K < end; ++i) {
+			// 11 wherever the bases match, 01/10/00 elsewhere
+			long same = ~(words[i] ^ pattern);
+			// keep one bit per matching base
+			same &= same >>> 1;
+			same &= 0x5555555555555555L;
+
+			// cut off anything at or after end in the last word
+			int inWord = Math.min(MAX_K, end - i * MAX_K);
+			if (inWord < MAX_K) same &= -1L << (64 - 2 * inWord);
+
+			rank += Long.bitCount(same);
+		}
+
+		return rank;
+	}
+
+	/**
+	 * Copies out part of this sequence.
+	 * @param start the first index to copy
+	 * @param end the index to stop before
+	 * @return a new sequence with the bases in [start, end)
+	 */
+	public PackedDNA slice(int start, int end) {
+		// check for argument validity
+		if (start < 0 || end > length || start > end)
+			throw new StringIndexOutOfBoundsException("Invalid start/end indices (" + start
+					+ "->" + end + ") on a " + length + "-length sequence");
+
+		// initialize return variable
+		PackedDNA slice = new PackedDNA(end - start);
+
+		// copy over a word at a time
+		for (int i = 0; start + i * MAX_K < end; ++i) {
+			int k = Math.min(MAX_K, end - start - i * MAX_K);
+			// k-mers come out at the bottom of a long, but words store at the top
+			slice.words[i] = kmer(start + i * MAX_K, k) << (64 - 2 * k);
+		}
+		slice.length = end - start;
+
+		return slice;
+	}
+
+	/**
+	 * Creates the reverse complement of this sequence.
+	 * @return a new sequence holding the reverse complement
+	 */
+	public PackedDNA reverseComplement() {
+		// initialize return variable
+		PackedDNA rc = new PackedDNA(length);
+		// add complementary codes in from the back
+		for (int i = length - 1; i >= 0; --i) rc.appendCode(3 - codeAt(i));
+
+		return rc;
+	}
+
+	/**
+	 * Finds how far up a word a base's code sits.
+	 * @param index the index of the base
+	 * @return the shift of the base's two bits
+	 */
+	private static int shift(int index) {
+		return 62 - 2 * (index % MAX_K);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof PackedDNA)) return false;
+
+		PackedDNA that = (PackedDNA) other;
+		if (length != that.length) return false;
+		// unused bits are always 0, so whole words can be compared
+		for (int i = 0, n = (length + MAX_K - 1) / MAX_K; i < n; ++i)
+			if (words[i] != that.words[i]) return false;
+
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(Arrays.copyOf(words, (length + MAX_K - 1) / MAX_K));
+	}
+
+	/**
+	 * Unpacks this sequence back to a string.
+	 * @return the bases as an upper case DNA string
+	 */
+	@Override
+	public String toString() {
+		// build up a char array for memory purposes
+		char[] dna = new char[length];
+		for (int i = 0; i < length; ++i) dna[i] = charAt(i);
+
+		return new String(dna);
+	}
+}
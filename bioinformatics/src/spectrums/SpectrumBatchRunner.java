@@ -0,0 +1,445 @@
+package spectrums;
+
+// for data structures
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+// for reading spectra and writing results
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// for running spectra on a pool of threads
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// for the sequencers
+import antibiotics.LeaderboardSequencer;
+import antibiotics.SpectralConvolution;
+
+/**
+ * Sequences a whole batch of spectra on a fixed pool of threads
+ * <br>
+ * Spectra are read one record at a time, either from every file in a directory or from one file holding
+ * many records, and handed to the pool as they're read, with only a few per thread waiting at once, so a
+ * batch of any size only holds a few spectra in memory. Each result is written to the output file as soon
+ * as it's done (so in order of completion, not input), as a tab-separated line of the record's name, the
+ * peptide (or the error that stopped it), and how many milliseconds it took. Once the batch is done, how
+ * many spectra were sequenced per second and the median and 99th percentile times are reported.
+ * <br>
+ * Records are whitespace-separated integer masses. In a file, a line starting with &gt; starts a record
+ * named by the rest of the line, and a blank line ends a record; records without a name are named by
+ * their file and their number in it.
+ * @author faith
+ */
+public class SpectrumBatchRunner {
+	/**
+	 * how many spectra may wait for each thread at once
+	 */
+	private static final int QUEUE_PER_THREAD = 4;
+
+	/**
+	 * turns a spectrum into a peptide
+	 */
+	private final Function<ArrayList<Integer>, String> sequencer;
+	/**
+	 * the number of threads in the pool
+	 */
+	private final int threads;
+
+	/**
+	 * Constructor
+	 * @param sequencer turns a spectrum into a peptide
+	 * @param threads the number of threads in the pool
+	 */
+	public SpectrumBatchRunner(Function<ArrayList<Integer>, String> sequencer, int threads) {
+		// check for argument validity
+		if (threads <= 0) throw new IllegalArgumentException("Can't run on " + threads + " threads");
+
+		this.sequencer = sequencer;
+		this.threads = threads;
+	}
+
+	/**
+	 * Creates a sequencer that runs leaderboard sequencing
+	 * <br>
+	 * Builds peptides from the m most common whole-number masses (57 to 200) of the spectrum's
+	 * convolution, like Scoring.scoringSequencing, but without needing Scoring's amino acid file
+	 * @param m the minimum number of convolution masses to build peptides from
+	 * @param n the minimum number of peptides to keep each round
+	 * @return a sequencer that writes peptides as masses separated by -
+	 */
+	public static Function<ArrayList<Integer>, String> leaderboard(int m, int n) {
+		return spectrum -> {
+			// the most common differences are the amino acids to build from
+			SpectralConvolution convolution = SpectralConvolution.integer();
+			int[] top = SpectralConvolution.topBins(
+					convolution.histogram(spectrum.stream().mapToInt(Integer::intValue).toArray()), m);
+			int[] aminos = new int[top.length];
+			for (int i = 0; i < top.length; i++) aminos[i] = (int) Math.round(convolution.mass(top[i]));
+
+			int[] peptide = new LeaderboardSequencer(spectrum, aminos, n).sequence();
+			if (peptide == null) throw new IllegalStateException("No peptide has the parent mass");
+			return Arrays.stream(peptide).mapToObj(Integer::toString).collect(Collectors.joining("-"));
+		};
+	}
+
+	/**
+	 * Creates a sequencer that runs spectrum graph sequencing
+	 * @return a sequencer that writes peptides as amino acid abbreviations
+	 */
+	public static Function<ArrayList<Integer>, String> graph() {
+		return spectrum -> {
+			// the graph needs a sorted spectrum
+			ArrayList<Integer> sorted = new ArrayList<Integer>(spectrum);
+			Collections.sort(sorted);
+			return new SpectrumGraph(sorted).findPeptide();
+		};
+	}
+
+	/**
+	 * Sequences every spectrum in a directory or file
+	 * <br>
+	 * Keeps the pool fed with up to QUEUE_PER_THREAD spectra per thread, and writes
+	 * each result as soon as any spectrum finishes.
+	 * @param input a directory of spectrum files, or one spectrum file
+	 * @param output the file to write results to
+	 * @return how the batch went
+	 * @throws IOException if input can't be read or output can't be written
+	 */
+	public Stats run(Path input, Path output) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CompletionService<Result> done = new ExecutorCompletionService<Result>(pool);
+		Stats stats = new Stats();
+
+		try (RecordReader reader = new RecordReader(input);
+				BufferedWriter writer = Files.newBufferedWriter(output)) {
+			int waiting = 0;
+			Record record = reader.next();
+
+			// keep going while there are spectra to send or results to collect
+			while (record != null || waiting > 0) {
+				// fill the queue
+				while (record != null && waiting < threads * QUEUE_PER_THREAD) {
+					Record next = record;
+					done.submit(() -> sequence(next));
+					waiting++;
+					record = reader.next();
+				}
+
+				// write the next result to finish
+				Result result = done.take().get();
+				waiting--;
+				writer.write(result.name + "\t" + result.peptide + "\t" + result.nanos / 1_000_000.0);
+				writer.newLine();
+				stats.add(result);
+			}
+		}
+		// every spectrum makes a result unless the JVM itself fails (like running out of memory),
+		// so these only happen if the pool or the JVM breaks
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for spectra", e);
+		}
+		catch (ExecutionException e) {
+			throw new IOException("A spectrum couldn't be sequenced", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+
+		stats.finish();
+		return stats;
+	}
+
+	/**
+	 * Sequences one spectrum, timing it
+	 * <br>
+	 * Any exception (including a mass that isn't a number) or linkage error (like a class
+	 * that fails to initialize) becomes the result, so one bad spectrum doesn't stop the batch
+	 * @param record the spectrum and its name
+	 * @return the peptide (or error) and how long it took
+	 */
+	private Result sequence(Record record) {
+		long start = System.nanoTime();
+		String peptide;
+		boolean failed = false;
+		try {
+			peptide = sequencer.apply(record.spectrum());
+		}
+		catch (Exception | LinkageError e) {
+			peptide = "ERROR " + e;
+			failed = true;
+		}
+
+		return new Result(record.name, peptide, System.nanoTime() - start, failed);
+	}
+
+	/**
+	 * A spectrum and its name
+	 * <br>
+	 * Masses are kept as read, and only parsed by the thread that sequences them
+	 */
+	private static class Record {
+		private final String name;
+		private final ArrayList<String> masses;
+
+		Record(String name, ArrayList<String> masses) {
+			this.name = name;
+			this.masses = masses;
+		}
+
+		/**
+		 * Parses the masses
+		 * @return the spectrum
+		 * @throws NumberFormatException if a mass isn't an integer
+		 */
+		ArrayList<Integer> spectrum() {
+			ArrayList<Integer> spectrum = new ArrayList<Integer>(masses.size());
+			for (String mass : masses) spectrum.add(Integer.parseInt(mass));
+			return spectrum;
+		}
+	}
+
+	/**
+	 * What sequencing one spectrum gave
+	 */
+	private static class Result {
+		private final String name, peptide;
+		private final long nanos;
+		private final boolean failed;
+
+		Result(String name, String peptide, long nanos, boolean failed) {
+			this.name = name;
+			this.peptide = peptide;
+			this.nanos = nanos;
+			this.failed = failed;
+		}
+	}
+
+	/**
+	 * Reads records one at a time from every file of a directory (in name order), or from one file
+	 */
+	private static class RecordReader implements Closeable {
+		/**
+		 * the files still to read
+		 */
+		private final Iterator<Path> files;
+		/**
+		 * the file being read, and its name
+		 */
+		private BufferedReader reader;
+		private String fileName;
+		/**
+		 * how many records have been read from the current file
+		 */
+		private int number;
+		/**
+		 * the name from a header line that has been read, but whose record hasn't
+		 */
+		private String header;
+
+		/**
+		 * Constructor
+		 * @param input a directory of spectrum files, or one spectrum file
+		 * @throws IOException if the directory can't be listed
+		 */
+		RecordReader(Path input) throws IOException {
+			List<Path> paths;
+			if (Files.isDirectory(input)) {
+				try (Stream<Path> listed = Files.list(input)) {
+					paths = listed.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+				}
+			}
+			else paths = List.of(input);
+			files = paths.iterator();
+		}
+
+		/**
+		 * Reads the next record
+		 * <br>
+		 * Reads lines until a record has masses and then hits a blank line, a header,
+		 * or the end of its file, moving on to the next file as needed
+		 * @return the next record, or null if there are none left
+		 * @throws IOException if a file can't be read
+		 */
+		Record next() throws IOException {
+			ArrayList<String> masses = new ArrayList<String>();
+			String name = header;
+			header = null;
+
+			while (true) {
+				// open the next file once this one runs out
+				if (reader == null) {
+					if (!files.hasNext()) return null;
+					Path file = files.next();
+					reader = Files.newBufferedReader(file);
+					fileName = file.getFileName().toString();
+					number = 0;
+				}
+
+				String line = reader.readLine();
+				// the end of a file ends its last record
+				if (line == null) {
+					reader.close();
+					reader = null;
+					if (!masses.isEmpty()) return record(name, masses);
+					name = null;
+					continue;
+				}
+
+				line = line.strip();
+				if (line.startsWith(">")) {
+					// a header ends the record before it, and names the next one
+					if (!masses.isEmpty()) {
+						header = line.substring(1).strip();
+						return record(name, masses);
+					}
+					name = line.substring(1).strip();
+				}
+				else if (line.isEmpty()) {
+					if (!masses.isEmpty()) return record(name, masses);
+				}
+				else masses.addAll(Arrays.asList(line.split("\\s+")));
+			}
+		}
+
+		/**
+		 * Names and counts a finished record
+		 * @param name the record's name from its header, or null if it had none
+		 * @param masses the record's masses
+		 * @return the record
+		 */
+		private Record record(String name, ArrayList<String> masses) {
+			number++;
+			return new Record(name != null ? name : fileName + ":" + number, masses);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (reader != null) reader.close();
+		}
+	}
+
+	/**
+	 * How a batch went
+	 * <br>
+	 * Collects each spectrum's time, then sorts them once the batch is done for the percentiles
+	 */
+	public static class Stats {
+		/**
+		 * when the batch started and ended
+		 */
+		private final long start = System.nanoTime();
+		private long end;
+		/**
+		 * how long each spectrum took, and how many there were
+		 */
+		private long[] nanos = new long[64];
+		private int count;
+		/**
+		 * how many spectra couldn't be sequenced
+		 */
+		private int failures;
+
+		/**
+		 * Records one spectrum's result
+		 * @param result the result
+		 */
+		private void add(Result result) {
+			if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+			nanos[count++] = result.nanos;
+			if (result.failed) failures++;
+		}
+
+		/**
+		 * Ends the batch, sorting the times
+		 */
+		private void finish() {
+			end = System.nanoTime();
+			Arrays.sort(nanos, 0, count);
+		}
+
+		/**
+		 * Getter for the number of spectra
+		 * @return how many spectra were sequenced (or failed)
+		 */
+		public int count() {
+			return count;
+		}
+
+		/**
+		 * Getter for the number of failures
+		 * @return how many spectra couldn't be sequenced
+		 */
+		public int failures() {
+			return failures;
+		}
+
+		/**
+		 * Calculates the throughput
+		 * @return spectra per second, over the whole batch
+		 */
+		public double perSecond() {
+			return count / Math.max(1e-9, (end - start) / 1e9);
+		}
+
+		/**
+		 * Finds a percentile of the time spectra took
+		 * <br>
+		 * Uses the nearest rank, so it's always a time some spectrum actually took
+		 * @param percent which percentile, from 0 to 100
+		 * @return that percentile, in milliseconds (0 if there were no spectra)
+		 */
+		public double percentile(double percent) {
+			if (count == 0) return 0;
+			int rank = (int) Math.ceil(percent / 100 * count);
+			return nanos[Math.min(count - 1, Math.max(0, rank - 1))] / 1_000_000.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d spectra (%d failed) at %.1f spectra/s, p50 %.2f ms, p99 %.2f ms",
+					count, failures, perSecond(), percentile(50), percentile(99));
+		}
+	}
+
+	/**
+	 * Runs a batch
+	 * <br>
+	 * Arguments are: the input directory or file, the output file, leaderboard or graph,
+	 * and then optionally the number of threads (all cores by default) and, for
+	 * leaderboard, m and n (20 and 1000 by default)
+	 * @param args see above
+	 * @throws IOException if the input can't be read or the output can't be written
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("usage: SpectrumBatchRunner input output leaderboard|graph [threads] [m] [n]");
+			return;
+		}
+
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		Function<ArrayList<Integer>, String> sequencer;
+		if (args[2].equals("graph")) sequencer = graph();
+		else if (args[2].equals("leaderboard"))
+			sequencer = leaderboard(args.length > 4 ? Integer.parseInt(args[4]) : 20,
+					args.length > 5 ? Integer.parseInt(args[5]) : 1000);
+		else throw new IllegalArgumentException("No sequencer called " + args[2]);
+
+		System.out.println(new SpectrumBatchRunner(sequencer, threads).run(Paths.get(args[0]), Paths.get(args[1])));
+	}
+}